@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Counting kernel that uses the Vector API. Only compiled with the vector
+ * profile. Loaded by IntervalKernels if the jdk.incubator.vector module is
+ * available at runtime.
+ *
+ * Starts are in the even lanes and ends in the odd lanes of each vector that
+ * is loaded from a packed bounds array. Starts are compared with value + 1
+ * and ends with the value. The lane of a start is set if the start is not
+ * after the value. The lane of an end is set if the end is before the value.
+ * Reinterpreted as a vector of longs, an interval contains the value if the
+ * lane of its start is set and the lane of its end is clear. Values equal
+ * to Integer.MAX_VALUE are counted by the scalar loop.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+final class VectorIntervalKernels implements IntervalKernels.CountKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> PAIRS = VectorSpecies.of(long.class, SPECIES.vectorShape());
+    private static final IntVector START_OFFSETS = IntVector.zero(SPECIES).blend(1, VectorMask.fromLong(SPECIES, 0x5555555555555555L));
+    /**
+     * Pair of lanes for an interval that contains the value. The start lane
+     * in the low half is set and the end lane in the high half is clear.
+     */
+    private static final long CONTAINED = 0xFFFFFFFFL;
+
+    @Override
+    public int countContaining(int[] bounds, int from, int to, int value) {
+	
+	int count = 0;
+	
+	int pos = from * 2;
+	int end = to * 2;
+	if (value < Integer.MAX_VALUE) {
+	    IntVector thresholds = START_OFFSETS.add(value);
+	    LongVector counts = LongVector.zero(PAIRS);
+	    int upper = pos + SPECIES.loopBound(end - pos);
+	    for (; pos < upper; pos += SPECIES.length()) {
+		IntVector vector = IntVector.fromArray(SPECIES, bounds, pos);
+		LongVector pairs = vector.compare(VectorOperators.LT, thresholds).toVector().reinterpretAsLongs();
+		counts = counts.add(1L, pairs.compare(VectorOperators.EQ, CONTAINED));
+	    }
+	    count += (int)counts.reduceLanes(VectorOperators.ADD);
+	}
+	for (; pos < end; pos += 2) {
+	    count += ((bounds[pos] <= value) & (bounds[pos + 1] >= value)) ? 1 : 0;
+	}
+	
+	return count;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Factory for non-negative integer sequences with values in a bounded
+ * universe [0-universeMax]. Sequences that are within the universe store
+ * their interval bounds as 8-bit values if the universe contains at most
+ * 256 values and as 16-bit values if the universe contains at most 65536
+ * values. Sequences with values outside the universe and factories with
+ * larger universes fall back to the default layouts.
+ *
+ * All sequence operations access interval bounds through the store of the
+ * sequence. They work on the narrow encodings without expanding them.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class BoundedIntegerSequenceFactory extends NonNegativeIntegerSequenceFactory {
+
+    private final int _universeMax;
+
+    /**
+     * Initialize the factory with the largest value in the universe.
+     *
+     * @param universeMax 
+     */
+    public BoundedIntegerSequenceFactory(int universeMax) {
+	
+	if (universeMax < 0) {
+	    throw new java.lang.IllegalArgumentException("Invalid universe maximum: " + universeMax);
+	}
+	_universeMax = universeMax;
+    }
+
+    @Override
+    IntervalStore encode(int[][] intervals) {
+	
+	int size = intervals.length;
+	if ((size > 0) && (intervals[0][0] >= 0) && (intervals[size - 1][1] <= _universeMax)) {
+	    return IntervalStore.encodeNarrow(intervals, _universeMax);
+	}
+	return super.encode(intervals);
+    }
+
+    /**
+     * The largest value in the universe of the factory.
+     *
+     * @return 
+     */
+    public int universeMax() {
+	
+	return _universeMax;
+    }
+}
@@ -16,6 +16,8 @@
 package org.data.curation.util.intseq;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -28,8 +30,16 @@ import java.util.List;
  */
 public abstract class IntegerSequence {
 
+    /**
+     * Estimated number of bytes that are occupied by a sequence object
+     * without its interval store and cached data.
+     */
+    static final long SHELL_SIZE_IN_BYTES = IntervalStore.align(IntervalStore.OBJECT_HEADER + (4L * IntervalStore.REFERENCE));
+
     private final IntegerSequenceFactory _factory;
-    private final int[][] _intervals;
+    private final IntervalStore _store;
+    private volatile int[] _prefixSums = null;
+    private volatile IntegerSequenceSummary _summary = null;
 
     /**
      * Initialize the integer sequence using an two-dimensional array of
@@ -69,9 +79,9 @@ public abstract class IntegerSequence {
 		}
 		prev = interval;
 	    }
-	    _intervals = this.copyIntervals(intervals, intervalCount);
+	    _store = _factory.encode(this.copyIntervals(intervals, intervalCount));
 	} else {
-	    _intervals = new int[0][];
+	    _store = _factory.encode(intervals);
 	}
     }
 
@@ -90,13 +100,13 @@ public abstract class IntegerSequence {
 	
 	_factory = factory;
 
-	_intervals = new int[intervals.size()][2];
+	int[][] bounds = new int[intervals.size()][2];
 	
 	IntegerInterval prev = null;
 	for (int iInterval = 0; iInterval < intervals.size(); iInterval++) {
 	    IntegerInterval interval = intervals.get(iInterval);
-	    _intervals[iInterval][0] = interval.start();
-	    _intervals[iInterval][1] = interval.end();
+	    bounds[iInterval][0] = interval.start();
+	    bounds[iInterval][1] = interval.end();
 	    if (prev != null) {
 		if (prev.end() >= interval.start()) {
 		    throw new java.lang.IllegalArgumentException("Adjacent or overlapping intervals [" + prev.start() + "-" + prev.end() + "] and [" + interval.start() + "-" + interval.end() + "].");
@@ -107,8 +117,37 @@ public abstract class IntegerSequence {
 		
 	    prev = interval;
 	}
+	
+	_store = _factory.encode(bounds);
     }
-    
+
+    /**
+     * Initialize the integer sequence from an array of intervals that is known
+     * to be valid, i.e., all intervals are sorted and neither adjacent nor
+     * overlapping. The intervals are not validated. Used by factories and
+     * operations that produce valid interval arrays by construction.
+     *
+     * @param factory 
+     * @param intervals 
+     */
+    IntegerSequence(IntegerSequenceFactory factory, int[][] intervals) {
+	
+	_factory = factory;
+	_store = _factory.encode(intervals);
+    }
+
+    /**
+     * Initialize the integer sequence from a valid interval store.
+     *
+     * @param factory 
+     * @param store 
+     */
+    IntegerSequence(IntegerSequenceFactory factory, IntervalStore store) {
+	
+	_factory = factory;
+	_store = store;
+    }
+
     /**
      * Returns an integer sequence that is a suffix of this integer sequence.
      * The result contains only those values that are after the given value.
@@ -140,18 +179,18 @@ public abstract class IntegerSequence {
      */
     public IntegerSequence append(int value) {
 
-	if (_intervals.length > 0) {
-	    int lastValue = _intervals[_intervals.length - 1][1];
+	if (_store.size() > 0) {
+	    int lastValue = _store.end(_store.size() - 1);
 	    if (lastValue >= value) {
 		throw new java.lang.IllegalArgumentException("Attempt to append value " + value + " to integer sequence that end at value " + lastValue);
 	    } else if (value == (lastValue + 1)) {
-		int[][] intervals = new int[_intervals.length][2];
-		this.arrayCopy(_intervals, intervals, _intervals.length);
-		intervals[_intervals.length - 1][1] = value;
+		int[][] intervals = new int[_store.size()][2];
+		this.arrayCopy(intervals, _store.size());
+		intervals[_store.size() - 1][1] = value;
 		return _factory.getSequence(intervals);
 	    } else {
-		int[][] intervals = new int[_intervals.length + 1][2];
-		this.arrayCopy(_intervals, intervals, _intervals.length);
+		int[][] intervals = new int[_store.size() + 1][2];
+		this.arrayCopy(intervals, _store.size());
 		intervals[intervals.length - 1] = new int[]{value, value};
 		return _factory.getSequence(intervals);
 	    }
@@ -161,20 +200,75 @@ public abstract class IntegerSequence {
     }
 
     /**
-     * Copy array of integers.
+     * Apply the given delta to this sequence. Expects this sequence to be the
+     * source sequence of the delta, i.e., the sequence that was used to
+     * compute the delta. Returns the target sequence of the delta.
+     *
+     * @param delta 
+     * @return 
+     */
+    public IntegerSequence applyDelta(IntegerSequenceDelta delta) {
+	
+	if (delta.sourceIntervals() != _store.size()) {
+	    throw new java.lang.IllegalArgumentException("Delta for sequence with " + delta.sourceIntervals() + " intervals cannot be applied to sequence with " + _store.size() + " intervals");
+	}
+	
+	int prefix = delta.prefixLength();
+	if ((prefix > 0) && (delta.intervals() > 0)) {
+	    /* Compare as long to avoid an overflow if the prefix ends at the
+	     * maximum integer value */
+	    if (delta.intervalStart(0) <= ((long)_store.end(prefix - 1) + 1)) {
+		throw new java.lang.IllegalArgumentException("Adjacent or overlapping intervals [" + _store.start(prefix - 1) + "-" + _store.end(prefix - 1) + "] and [" + delta.intervalStart(0) + "-" + delta.intervalEnd(0) + "].");
+	    }
+	}
+	
+	int[][] intervals = new int[prefix + delta.intervals()][];
+	for (int iInterval = 0; iInterval < prefix; iInterval++) {
+	    intervals[iInterval] = _store.interval(iInterval);
+	}
+	for (int iInterval = 0; iInterval < delta.intervals(); iInterval++) {
+	    intervals[prefix + iInterval] = new int[]{delta.intervalStart(iInterval), delta.intervalEnd(iInterval)};
+	}
+	
+	return _factory.getTrustedSequence(intervals);
+    }
+
+    /**
+     * Copy the first intervals of this sequence into the given array.
      * 
-     * @param src
      * @param target
      * @param length 
      */
-    private void arrayCopy(int[][] src, int[][] target, int length) {
+    private void arrayCopy(int[][] target, int length) {
 	
 	for (int iInterval = 0; iInterval < length; iInterval++) {
-	    target[iInterval][0] = src[iInterval][0];
-	    target[iInterval][1] = src[iInterval][1];
+	    target[iInterval][0] = _store.start(iInterval);
+	    target[iInterval][1] = _store.end(iInterval);
 	}
     }
     
+    /**
+     * Returns the index of the first interval that ends at or after the given
+     * value. Returns the number of intervals if no such interval exists.
+     *
+     * @param value 
+     * @return 
+     */
+    public int ceilingInterval(int value) {
+	
+	int low = 0;
+	int high = _store.size();
+	while (low < high) {
+	    int mid = (low + high) >>> 1;
+	    if (_store.end(mid) < value) {
+		low = mid + 1;
+	    } else {
+		high = mid;
+	    }
+	}
+	return low;
+    }
+
     /**
      * Returns a new integer sequence that contains all values in this sequence
      * up to (and including) the given last value. The result is an empty
@@ -202,6 +296,119 @@ public abstract class IntegerSequence {
 	return _factory.getSequence(intervals);
     }
     
+    /**
+     * Returns an approximation of this sequence that has at most the given
+     * number of intervals. Intervals are merged by filling the smallest gaps
+     * between them. The result is a superset of this sequence. The number of
+     * values that were added is the smallest possible for the given maximum
+     * and is returned by coarsenError().
+     *
+     * @param maxIntervals 
+     * @return 
+     */
+    public IntegerSequence coarsen(int maxIntervals) {
+	
+	if (maxIntervals < 1) {
+	    throw new java.lang.IllegalArgumentException("Invalid number of intervals: " + maxIntervals);
+	} else if (_store.size() <= maxIntervals) {
+	    return this;
+	}
+	
+	/*
+	 * Keep the (maxIntervals - 1) largest gaps. The threshold is the size
+	 * of the largest gap that is removed. All smaller gaps are removed as
+	 * well as the first gaps with a size equal to the threshold.
+	 */
+	long[] gaps = new long[_store.size() - 1];
+	for (int iGap = 0; iGap < gaps.length; iGap++) {
+	    gaps[iGap] = ((long)_store.start(iGap + 1) - (long)_store.end(iGap)) - 1L;
+	}
+	long[] sortedGaps = Arrays.copyOf(gaps, gaps.length);
+	Arrays.sort(sortedGaps);
+	int removeCount = _store.size() - maxIntervals;
+	long threshold = sortedGaps[removeCount - 1];
+	int removeAtThreshold = 0;
+	for (int iGap = 0; iGap < removeCount; iGap++) {
+	    if (sortedGaps[iGap] == threshold) {
+		removeAtThreshold++;
+	    }
+	}
+	
+	int[][] intervals = new int[maxIntervals][];
+	int index = 0;
+	int start = _store.start(0);
+	for (int iGap = 0; iGap < gaps.length; iGap++) {
+	    if (gaps[iGap] < threshold) {
+		continue;
+	    } else if ((gaps[iGap] == threshold) && (removeAtThreshold > 0)) {
+		removeAtThreshold--;
+		continue;
+	    }
+	    intervals[index++] = new int[]{start, _store.end(iGap)};
+	    start = _store.start(iGap + 1);
+	}
+	intervals[index] = new int[]{start, _store.end(_store.size() - 1)};
+	
+	return _factory.getTrustedSequence(intervals);
+    }
+
+    /**
+     * The number of values that are added to this sequence when it is
+     * coarsened to at most the given number of intervals, i.e., the sum of
+     * the smallest gaps that are filled. Computed without creating the
+     * coarsened sequence. The error is returned as a long because it may
+     * exceed the range of integers.
+     *
+     * @param maxIntervals 
+     * @return 
+     */
+    public long coarsenError(int maxIntervals) {
+	
+	if (maxIntervals < 1) {
+	    throw new java.lang.IllegalArgumentException("Invalid number of intervals: " + maxIntervals);
+	} else if (_store.size() <= maxIntervals) {
+	    return 0;
+	}
+	
+	long[] gaps = new long[_store.size() - 1];
+	for (int iGap = 0; iGap < gaps.length; iGap++) {
+	    gaps[iGap] = ((long)_store.start(iGap + 1) - (long)_store.end(iGap)) - 1L;
+	}
+	Arrays.sort(gaps);
+	long error = 0;
+	for (int iGap = 0; iGap < _store.size() - maxIntervals; iGap++) {
+	    error += gaps[iGap];
+	}
+	return error;
+    }
+
+    /**
+     * Compute the delta that transforms this sequence into the given target
+     * sequence. The delta contains the number of leading intervals that both
+     * sequences have in common and the remaining intervals of the target.
+     *
+     * @param target 
+     * @return 
+     */
+    public IntegerSequenceDelta computeDelta(IntegerSequence target) {
+	
+	int prefix = 0;
+	int maxPrefix = Math.min(_store.size(), target.intervals());
+	while (prefix < maxPrefix) {
+	    if ((_store.start(prefix) != target.intervalStart(prefix)) || (_store.end(prefix) != target.intervalEnd(prefix))) {
+		break;
+	    }
+	    prefix++;
+	}
+	
+	int[][] intervals = new int[target.intervals() - prefix][];
+	for (int iInterval = 0; iInterval < intervals.length; iInterval++) {
+	    intervals[iInterval] = new int[]{target.intervalStart(prefix + iInterval), target.intervalEnd(prefix + iInterval)};
+	}
+	
+	return new IntegerSequenceDelta(_store.size(), prefix, intervals);
+    }
+
     /**
      * Copy intervals and merge adjacent. Assumes that length reflects the
      * total number of resulting intervals.
@@ -228,6 +435,26 @@ public abstract class IntegerSequence {
 	
 	return result;
     }
+
+    /**
+     * Copy the intervals in the index range from-to (excluding to) into the
+     * target array starting at the given offset. Returns the offset after the
+     * last copied interval.
+     *
+     * @param from 
+     * @param to 
+     * @param target 
+     * @param offset 
+     * @return 
+     */
+    private int copyTo(int from, int to, int[][] target, int offset) {
+	
+	int index = offset;
+	for (int iInterval = from; iInterval < to; iInterval++) {
+	    target[index++] = _store.interval(iInterval);
+	}
+	return index;
+    }
     
     /**
      * Returns true if the sequence contains the given integer value.
@@ -237,15 +464,9 @@ public abstract class IntegerSequence {
      */
     public boolean contains(int value) {
 
-	if (_intervals.length > 0) {
-	    for (int[] interval : _intervals) {
-		if ((interval[0] <= value) && (interval[1] >= value)) {
-		    return true;
-		}
-	    }
-	}
+	int index = this.floorInterval(value);
 	
-	return false;
+	return ((index >= 0) && (_store.end(index) >= value));
     }
 
     /**
@@ -257,17 +478,21 @@ public abstract class IntegerSequence {
      */
     public boolean contains(IntegerSequence sequence) {
 
+	if (!this.mayContain(sequence)) {
+	    return false;
+	}
+	
 	int idxI = 0;
 	int idxJ = 0;
 		
 	while ((idxI < this.intervals()) && (idxJ < sequence.intervals())) {
-	    IntegerInterval intervalI = this.interval(idxI);
-	    IntegerInterval intervalJ = sequence.interval(idxJ);
-	    if (intervalI.end() < intervalJ.start()) {
+	    int endI = _store.end(idxI);
+	    int startJ = sequence.intervalStart(idxJ);
+	    if (endI < startJ) {
 		idxI++;
-	    } else if (intervalI.start() > intervalJ.start()) {
+	    } else if (_store.start(idxI) > startJ) {
 		return false;
-	    } else if (intervalI.end() < intervalJ.end()) {
+	    } else if (endI < sequence.intervalEnd(idxJ)) {
 		return false;
 	    } else {
 		idxJ++;
@@ -277,6 +502,137 @@ public abstract class IntegerSequence {
 	return (idxJ == sequence.intervals());
     }
 
+    /**
+     * Returns the number of values in this sequence that are in the range
+     * from-to (including both bounds). Uses binary search to find the first
+     * and last interval in the range and a cached array of prefix sums over
+     * the interval lengths. Neither the search nor the count allocate any
+     * objects once the prefix sums have been computed.
+     *
+     * @param from 
+     * @param to 
+     * @return 
+     */
+    public int count(int from, int to) {
+	
+	if (from > to) {
+	    return 0;
+	}
+	
+	int first = this.ceilingInterval(from);
+	int last = this.floorInterval(to);
+	if (first > last) {
+	    return 0;
+	}
+	
+	int[] prefixSums = this.prefixSums();
+	int count = prefixSums[last + 1] - prefixSums[first];
+	if (_store.start(first) < from) {
+	    count -= (from - _store.start(first));
+	}
+	if (_store.end(last) > to) {
+	    count -= (_store.end(last) - to);
+	}
+	return count;
+    }
+
+    /**
+     * Returns a cursor over the intervals in this sequence.
+     *
+     * @return 
+     */
+    public IntegerSequenceCursor cursor() {
+	
+	return new IntegerSequenceCursor(this);
+    }
+
+    /**
+     * Returns a new sequence that contains the values of this sequence that
+     * are not in the given sequence. Computed in a single merge pass. If one
+     * of the sequences has a lot more intervals than the other the merge uses
+     * galloping search to skip intervals of the larger sequence. This
+     * sequence is returned if no value is removed.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public IntegerSequence difference(IntegerSequence sequence) {
+	
+	if (!this.mayOverlap(sequence)) {
+	    return this;
+	}
+	
+	int sizeI = _store.size();
+	int sizeJ = sequence.intervals();
+	
+	/* Each interval of the given sequence within the range of this
+	 * sequence adds at most one interval to the result */
+	int firstJ = sequence.gallop(_store.start(0), 0);
+	int lastJ = Math.min(sequence.gallop(_store.end(sizeI - 1), firstJ) + 1, sizeJ);
+	int[][] buffer = new int[sizeI + (lastJ - firstJ)][];
+	int size = 0;
+	boolean changed = false;
+	
+	int idxI = 0;
+	int idxJ = 0;
+	while (idxI < sizeI) {
+	    int startI = _store.start(idxI);
+	    int endI = _store.end(idxI);
+	    idxJ = sequence.gallop(startI, idxJ);
+	    if (idxJ == sizeJ) {
+		size = this.copyTo(idxI, sizeI, buffer, size);
+		break;
+	    } else if (sequence.intervalStart(idxJ) > endI) {
+		/*
+		 * Copy all intervals that end before the start of the next
+		 * interval in the given sequence.
+		 */
+		int next = this.gallop(sequence.intervalStart(idxJ), idxI);
+		size = this.copyTo(idxI, next, buffer, size);
+		idxI = next;
+		continue;
+	    }
+	    changed = true;
+	    int start = startI;
+	    boolean remainder = true;
+	    while ((idxJ < sizeJ) && (sequence.intervalStart(idxJ) <= endI)) {
+		int startJ = sequence.intervalStart(idxJ);
+		int endJ = sequence.intervalEnd(idxJ);
+		if (startJ > start) {
+		    buffer[size++] = new int[]{start, startJ - 1};
+		}
+		if (endJ >= endI) {
+		    remainder = false;
+		    break;
+		}
+		start = endJ + 1;
+		idxJ++;
+	    }
+	    if (remainder) {
+		buffer[size++] = new int[]{start, endI};
+	    }
+	    idxI++;
+	}
+	
+	if (!changed) {
+	    return this;
+	}
+	return _factory.getTrustedSequence(Arrays.copyOf(buffer, size));
+    }
+
+    /**
+     * Returns the number of values in this sequence that are not contained in
+     * the given sequence, i.e., the length of this sequence minus the length
+     * of the intersection.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public int differenceLength(IntegerSequence sequence) {
+	
+	return this.length() - this.intersectionLength(sequence);
+    }
+
     /**
      * Returns true if the two sequences are disjoint.
      * 
@@ -311,6 +667,60 @@ public abstract class IntegerSequence {
 	return false;
     }
 
+    /**
+     * Estimated number of bytes that are occupied by this sequence. Includes
+     * the sequence object, its interval store, and cached prefix sums and
+     * summary. The factory is shared and not included. Stores that are views
+     * on the intervals of another sequence only account for the view.
+     *
+     * @return 
+     */
+    public long estimatedSizeInBytes() {
+	
+	long size = SHELL_SIZE_IN_BYTES + _store.sizeInBytes();
+	int[] prefixSums = _prefixSums;
+	if (prefixSums != null) {
+	    size += IntervalStore.align(IntervalStore.ARRAY_HEADER + (4L * prefixSums.length));
+	}
+	IntegerSequenceSummary summary = _summary;
+	if (summary != null) {
+	    size += summary.sizeInBytes();
+	}
+	return size;
+    }
+
+    /**
+     * The factory that is used to create new sequences from this sequence.
+     *
+     * @return 
+     */
+    IntegerSequenceFactory factory() {
+	
+	return _factory;
+    }
+
+    /**
+     * Returns the index of the last interval that starts at or before the
+     * given value. Returns -1 if no such interval exists.
+     *
+     * @param value 
+     * @return 
+     */
+    public int floorInterval(int value) {
+	
+	int low = 0;
+	int high = _store.size();
+	while (low < high) {
+	    int mid = (low + high) >>> 1;
+	    if (_store.start(mid) <= value) {
+		low = mid + 1;
+	    } else {
+		high = mid;
+	    }
+	}
+	return low - 1;
+    }
+
     /**
      * The first value in this sequence. The first value of an empty
      * sequence is undefined and an exception will be thrown.
@@ -325,6 +735,52 @@ public abstract class IntegerSequence {
 	return this.interval(0).start();
     }
 
+    /**
+     * Returns the index of the first interval at or after the given start
+     * index that ends at or after the given value. Returns the number of
+     * intervals if no such interval exists.
+     *
+     * Uses galloping search, i.e., probes the intervals at exponentially
+     * increasing distance from the start index before doing a binary search
+     * in the last probed range. The cost is logarithmic in the distance
+     * between the start index and the result.
+     *
+     * @param value 
+     * @param fromIndex 
+     * @return 
+     */
+    int gallop(int value, int fromIndex) {
+	
+	int size = this.intervals();
+	
+	if ((fromIndex >= size) || (this.intervalEnd(fromIndex) >= value)) {
+	    return fromIndex;
+	}
+	
+	int low = fromIndex;
+	int step = 1;
+	int high = fromIndex + step;
+	while ((high < size) && (this.intervalEnd(high) < value)) {
+	    low = high;
+	    step <<= 1;
+	    high = (size - low > step) ? low + step : size;
+	}
+	/*
+	 * The interval at low ends before the value. The interval at high
+	 * (if any) ends at or after the value.
+	 */
+	while (high - low > 1) {
+	    int mid = (low + high) >>> 1;
+	    if (this.intervalEnd(mid) < value) {
+		low = mid;
+	    } else {
+		high = mid;
+	    }
+	}
+	
+	return high;
+    }
+
     /**
      * Returns the intersection of the two integer sequences.
      * 
@@ -333,17 +789,23 @@ public abstract class IntegerSequence {
      */
     public IntegerSequence intersect(IntegerSequence sequence) {
 	
+	if (!this.mayOverlap(sequence)) {
+	    return _factory.getSequence();
+	}
+	
 	int idxI = 0;
 	int idxJ = 0;
 	
 	ArrayList<int[]> intersects = new ArrayList<>(0);
 	
 	while ((idxI < this.intervals()) && (idxJ < sequence.intervals())) {
-	    IntegerInterval intervalI = this.interval(idxI);
-	    IntegerInterval intervalJ = sequence.interval(idxJ);
-	    if (intervalI.end() < intervalJ.start()) {
+	    int startI = _store.start(idxI);
+	    int endI = _store.end(idxI);
+	    int startJ = sequence.intervalStart(idxJ);
+	    int endJ = sequence.intervalEnd(idxJ);
+	    if (endI < startJ) {
 		idxI++;
-	    } else if (intervalI.start() > intervalJ.end()) {
+	    } else if (startI > endJ) {
 		idxJ++;
 	    } else {
 		/*
@@ -351,12 +813,12 @@ public abstract class IntegerSequence {
 		 * can't increment the index for that timestamp as the interval
 		 * may overlap with the next interval from the other timestamp.
 		 */
-		int end = Math.min(intervalI.end(), intervalJ.end());
-		intersects.add(new int[]{Math.max(intervalI.start(), intervalJ.start()), end});
-		if (intervalI.end() <= end) {
+		int end = Math.min(endI, endJ);
+		intersects.add(new int[]{Math.max(startI, startJ), end});
+		if (endI <= end) {
 		    idxI++;
 		}
-		if (intervalJ.end() <= end) {
+		if (endJ <= end) {
 		    idxJ++;
 		}
 	    }
@@ -373,6 +835,46 @@ public abstract class IntegerSequence {
 	}
     }
 
+    /**
+     * Returns the number of values that are contained in both sequences.
+     * Computed in a single merge pass over both sequences without
+     * materializing the intersection.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public int intersectionLength(IntegerSequence sequence) {
+	
+	int count = 0;
+	
+	int idxI = 0;
+	int idxJ = 0;
+	int endI = this.intervals();
+	int endJ = sequence.intervals();
+	while ((idxI < endI) && (idxJ < endJ)) {
+	    int startI = this.intervalStart(idxI);
+	    int stopI = this.intervalEnd(idxI);
+	    int startJ = sequence.intervalStart(idxJ);
+	    int stopJ = sequence.intervalEnd(idxJ);
+	    if (stopI < startJ) {
+		idxI++;
+	    } else if (startI > stopJ) {
+		idxJ++;
+	    } else {
+		int end = Math.min(stopI, stopJ);
+		count += (end - Math.max(startI, startJ)) + 1;
+		if (stopI <= end) {
+		    idxI++;
+		}
+		if (stopJ <= end) {
+		    idxJ++;
+		}
+	    }
+	}
+	
+	return count;
+    }
+
     /**
      * The interval at the given index position.
      * 
@@ -381,9 +883,33 @@ public abstract class IntegerSequence {
      */
     public IntegerInterval interval(int index) {
 	
-	return _factory.getInterval(_intervals[index]);
+	return _factory.getInterval(_store.interval(index));
     }
-    
+
+    /**
+     * The end of the interval at the given index position. Avoids the
+     * instantiation of an interval object.
+     *
+     * @param index 
+     * @return 
+     */
+    public int intervalEnd(int index) {
+	
+	return _store.end(index);
+    }
+
+    /**
+     * The start of the interval at the given index position. Avoids the
+     * instantiation of an interval object.
+     *
+     * @param index 
+     * @return 
+     */
+    public int intervalStart(int index) {
+	
+	return _store.start(index);
+    }
+
     /**
      * The number of intervals.
      * 
@@ -391,9 +917,26 @@ public abstract class IntegerSequence {
      */
     public int intervals() {
 
-	return _intervals.length;
+	return _store.size();
     }
     
+    /**
+     * Returns the range of indexes of intervals that overlap the range
+     * from-to. The result is an array of length two with the index of the
+     * first interval and the index after the last interval. The range is
+     * empty if both values are equal.
+     *
+     * @param from 
+     * @param to 
+     * @return 
+     */
+    public int[] intervalsIn(int from, int to) {
+	
+	int first = this.ceilingInterval(from);
+	int last = (from <= to) ? this.floorInterval(to) + 1 : first;
+	return new int[]{first, Math.max(first, last)};
+    }
+
     /**
      * Returns true if the integer sequence is empty.
      * 
@@ -404,6 +947,26 @@ public abstract class IntegerSequence {
 	return (this.intervals() == 0);
     }
     
+    /**
+     * Returns the Jaccard similarity of the two sequences, i.e., the number of
+     * values in the intersection divided by the number of values in the union.
+     * The similarity of two empty sequences is 1.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public double jaccard(IntegerSequence sequence) {
+	
+	long intersection = this.intersectionLength(sequence);
+	long union = ((long)this.length() + (long)sequence.length()) - intersection;
+	
+	if (union == 0) {
+	    return 1.0;
+	} else {
+	    return (double)intersection / (double)union;
+	}
+    }
+
     /**
      * Returns the last value in this integer sequence. The last value
      * for an empty timestamp is undefined and an exception will be thrown.
@@ -418,6 +981,16 @@ public abstract class IntegerSequence {
 	return this.interval(this.intervals() - 1).end();
     }
     
+    /**
+     * The memory layout that is used for the intervals of this sequence.
+     *
+     * @return 
+     */
+    public IntegerSequenceLayout layout() {
+	
+	return _store.layout();
+    }
+
     /**
      * Returns the total number of integer values in the sequence of integers.
      * 
@@ -427,13 +1000,68 @@ public abstract class IntegerSequence {
 	
 	int count = 0;
 	
-	for (int[] interval : _intervals) {
-	    count += ((interval[1] - interval[0]) + 1);
+	for (int iInterval = 0; iInterval < _store.size(); iInterval++) {
+	    count += ((_store.end(iInterval) - _store.start(iInterval)) + 1);
 	}
 	
 	return count;
     }
 
+    /**
+     * Returns false if this sequence definitely does not contain all values
+     * of the given sequence. Uses the occupancy masks only if the summaries
+     * of both sequences have already been computed. Otherwise, only the first
+     * and last values are compared. Never computes a summary, i.e., the test
+     * takes constant time.
+     *
+     * @param sequence 
+     * @return 
+     */
+    private boolean mayContain(IntegerSequence sequence) {
+	
+	IntegerSequenceSummary summaryI = _summary;
+	IntegerSequenceSummary summaryJ = sequence._summary;
+	if ((summaryI != null) && (summaryJ != null)) {
+	    return summaryI.mayContain(summaryJ);
+	}
+	
+	int sizeJ = sequence.intervals();
+	if (sizeJ == 0) {
+	    return true;
+	}
+	int sizeI = _store.size();
+	if (sizeI == 0) {
+	    return false;
+	}
+	return ((_store.start(0) <= sequence.intervalStart(0)) && (_store.end(sizeI - 1) >= sequence.intervalEnd(sizeJ - 1)));
+    }
+
+    /**
+     * Returns false if the two sequences definitely do not have any value in
+     * common. Uses the occupancy masks only if the summaries of both
+     * sequences have already been computed. Otherwise, only the first and
+     * last values are compared. Never computes a summary, i.e., the test
+     * takes constant time.
+     *
+     * @param sequence 
+     * @return 
+     */
+    private boolean mayOverlap(IntegerSequence sequence) {
+	
+	IntegerSequenceSummary summaryI = _summary;
+	IntegerSequenceSummary summaryJ = sequence._summary;
+	if ((summaryI != null) && (summaryJ != null)) {
+	    return summaryI.mayOverlap(summaryJ);
+	}
+	
+	int sizeI = _store.size();
+	int sizeJ = sequence.intervals();
+	if ((sizeI == 0) || (sizeJ == 0)) {
+	    return false;
+	}
+	return ((_store.start(0) <= sequence.intervalEnd(sizeJ - 1)) && (sequence.intervalStart(0) <= _store.end(sizeI - 1)));
+    }
+
     /**
      * Returns true if the two sequences overlap. This is the negation of
      * disjoint.
@@ -443,15 +1071,19 @@ public abstract class IntegerSequence {
      */
     public boolean overlap(IntegerSequence sequence) {
 
+	if (!this.mayOverlap(sequence)) {
+	    return false;
+	}
+	
 	int idxI = 0;
 	int idxJ = 0;
 		
 	while ((idxI < this.intervals()) && (idxJ < sequence.intervals())) {
-	    IntegerInterval intervalI = this.interval(idxI);
-	    IntegerInterval intervalJ = sequence.interval(idxJ);
-	    if (intervalI.overlap(intervalJ)) {
+	    int startI = _store.start(idxI);
+	    int startJ = sequence.intervalStart(idxJ);
+	    if ((startI <= sequence.intervalEnd(idxJ)) && (startJ <= _store.end(idxI))) {
 		return true;
-	    } else if (intervalI.start() < intervalJ.start()) {
+	    } else if (startI < startJ) {
 		idxI++;
 	    } else {
 		idxJ++;
@@ -461,6 +1093,450 @@ public abstract class IntegerSequence {
 	return false;
     }
     
+    /**
+     * Array of prefix sums over the interval lengths. The i-th element is
+     * the number of values in the first i intervals. The array is computed
+     * on first use. Concurrent calls may compute the array more than once,
+     * which is harmless since the sequence is immutable.
+     *
+     * @return 
+     */
+    private int[] prefixSums() {
+	
+	int[] prefixSums = _prefixSums;
+	if (prefixSums == null) {
+	    prefixSums = new int[_store.size() + 1];
+	    for (int iInterval = 0; iInterval < _store.size(); iInterval++) {
+		prefixSums[iInterval + 1] = prefixSums[iInterval] + ((_store.end(iInterval) - _store.start(iInterval)) + 1);
+	    }
+	    _prefixSums = prefixSums;
+	}
+	return prefixSums;
+    }
+
+    /**
+     * Returns a stateful probe for membership tests on this sequence. The
+     * probe is optimized for lookups of values in increasing order.
+     *
+     * @return 
+     */
+    public IntegerSequenceProbe probe() {
+	
+	return new IntegerSequenceProbe(this);
+    }
+
+    /**
+     * Returns the index of the interval that contains the value with the
+     * given rank, i.e., the last interval with a prefix sum that is lower
+     * than or equal to the rank.
+     *
+     * @param prefixSums 
+     * @param rank 
+     * @return 
+     */
+    private int rankInterval(int[] prefixSums, int rank) {
+	
+	int low = 0;
+	int high = _store.size() - 1;
+	while (low < high) {
+	    int mid = (low + high + 1) >>> 1;
+	    if (prefixSums[mid] <= rank) {
+		low = mid;
+	    } else {
+		high = mid - 1;
+	    }
+	}
+	return low;
+    }
+
+    /**
+     * Returns the relationship between this sequence and the given sequence.
+     * The relationship is determined in a single merge pass over both
+     * sequences without allocating any objects. The pass stops as soon as
+     * the sequences are known to overlap.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public IntegerSequenceRelation relate(IntegerSequence sequence) {
+	
+	int sizeI = _store.size();
+	int sizeJ = sequence.intervals();
+	if ((sizeI == 0) || (sizeJ == 0)) {
+	    if (sizeI == sizeJ) {
+		return IntegerSequenceRelation.EQUAL;
+	    } else if (sizeI == 0) {
+		return IntegerSequenceRelation.SUBSET;
+	    } else {
+		return IntegerSequenceRelation.SUPERSET;
+	    }
+	} else if ((_store.end(sizeI - 1) < sequence.intervalStart(0)) || (sequence.intervalEnd(sizeJ - 1) < _store.start(0))) {
+	    return IntegerSequenceRelation.DISJOINT;
+	}
+	
+	/* Flags for values that are only in this sequence, only in the given
+	 * sequence, and in both sequences */
+	boolean onlyI = false;
+	boolean onlyJ = false;
+	boolean common = false;
+	
+	int idxI = 0;
+	int idxJ = 0;
+	int startI = _store.start(0);
+	int startJ = sequence.intervalStart(0);
+	while ((idxI < sizeI) && (idxJ < sizeJ)) {
+	    int endI = _store.end(idxI);
+	    int endJ = sequence.intervalEnd(idxJ);
+	    if (endI < startJ) {
+		onlyI = true;
+		if (++idxI < sizeI) {
+		    startI = _store.start(idxI);
+		}
+	    } else if (endJ < startI) {
+		onlyJ = true;
+		if (++idxJ < sizeJ) {
+		    startJ = sequence.intervalStart(idxJ);
+		}
+	    } else {
+		common = true;
+		if (startI < startJ) {
+		    onlyI = true;
+		} else if (startJ < startI) {
+		    onlyJ = true;
+		}
+		if (endI < endJ) {
+		    startJ = endI + 1;
+		    if (++idxI < sizeI) {
+			startI = _store.start(idxI);
+		    }
+		} else if (endJ < endI) {
+		    startI = endJ + 1;
+		    if (++idxJ < sizeJ) {
+			startJ = sequence.intervalStart(idxJ);
+		    }
+		} else {
+		    if (++idxI < sizeI) {
+			startI = _store.start(idxI);
+		    }
+		    if (++idxJ < sizeJ) {
+			startJ = sequence.intervalStart(idxJ);
+		    }
+		}
+	    }
+	    if (onlyI && onlyJ && common) {
+		return IntegerSequenceRelation.OVERLAP;
+	    }
+	}
+	if (idxI < sizeI) {
+	    onlyI = true;
+	} else if (idxJ < sizeJ) {
+	    onlyJ = true;
+	}
+	
+	if (!common) {
+	    return IntegerSequenceRelation.DISJOINT;
+	} else if (onlyI && onlyJ) {
+	    return IntegerSequenceRelation.OVERLAP;
+	} else if (onlyI) {
+	    return IntegerSequenceRelation.SUPERSET;
+	} else if (onlyJ) {
+	    return IntegerSequenceRelation.SUBSET;
+	} else {
+	    return IntegerSequenceRelation.EQUAL;
+	}
+    }
+
+    /**
+     * Returns a new sequence that contains the values of this sequence mapped
+     * by the given function. Each interval is mapped to the interval between
+     * the images of its start and end. Intervals that become adjacent or
+     * overlap are merged. The mapping is only applied to interval bounds.
+     * The result is therefore only exact for functions that map consecutive
+     * values to equal or consecutive values. An exception is raised if the
+     * function is not monotone on the interval bounds.
+     *
+     * @param mapping 
+     * @return 
+     */
+    public IntegerSequence remap(IntegerSequenceMapping mapping) {
+	
+	if (_store.size() == 0) {
+	    return this;
+	}
+	
+	int[][] buffer = new int[_store.size()][];
+	int size = 0;
+	int lastEnd = 0;
+	for (int iInterval = 0; iInterval < _store.size(); iInterval++) {
+	    int start = mapping.apply(_store.start(iInterval));
+	    int end = mapping.apply(_store.end(iInterval));
+	    if (end < start) {
+		throw new java.lang.IllegalArgumentException("Mapping is not monotone for interval " + _store.start(iInterval) + "-" + _store.end(iInterval));
+	    } else if (size > 0) {
+		if (start < lastEnd) {
+		    throw new java.lang.IllegalArgumentException("Mapping is not monotone at value " + _store.start(iInterval));
+		} else if ((long)start <= ((long)lastEnd + 1L)) {
+		    /*
+		     * Merge with the previous interval.
+		     */
+		    buffer[size - 1] = new int[]{buffer[size - 1][0], end};
+		    lastEnd = end;
+		    continue;
+		}
+	    }
+	    buffer[size++] = new int[]{start, end};
+	    lastEnd = end;
+	}
+	
+	if (size < buffer.length) {
+	    return _factory.getTrustedSequence(Arrays.copyOf(buffer, size));
+	} else {
+	    return _factory.getTrustedSequence(buffer);
+	}
+    }
+
+    /**
+     * Returns a new sequence that contains the values of this sequence
+     * incremented by delta. Raises an exception if any value of the result
+     * is outside the range of integers or not valid for the sequence
+     * implementation. Only the first and last value need to be checked since
+     * shifting preserves the order of all values.
+     *
+     * @param delta 
+     * @return 
+     */
+    public IntegerSequence shift(int delta) {
+	
+	if ((delta == 0) || (_store.size() == 0)) {
+	    return this;
+	}
+	
+	long first = (long)_store.start(0) + (long)delta;
+	long last = (long)_store.end(_store.size() - 1) + (long)delta;
+	if ((first < Integer.MIN_VALUE) || (last > Integer.MAX_VALUE)) {
+	    throw new java.lang.IllegalArgumentException("Shift by " + delta + " exceeds integer range");
+	}
+	
+	int[][] intervals = new int[_store.size()][];
+	for (int iInterval = 0; iInterval < _store.size(); iInterval++) {
+	    intervals[iInterval] = new int[]{_store.start(iInterval) + delta, _store.end(iInterval) + delta};
+	}
+	return _factory.getTrustedSequence(intervals);
+    }
+
+    /**
+     * Split the sequence into the given number of parts with near-equal
+     * length. The i-th part contains the values with rank in the range
+     * [i * n / parts, (i + 1) * n / parts), where n is the length of the
+     * sequence. Parts are empty if the sequence has fewer values than
+     * parts. The parts are views on the intervals of this sequence. Each
+     * part is located using binary search on the cached prefix sums of the
+     * interval lengths, i.e., the cost is O(parts * log(intervals)).
+     *
+     * @param parts 
+     * @return 
+     */
+    public IntegerSequence[] split(int parts) {
+	
+	if (parts < 1) {
+	    throw new java.lang.IllegalArgumentException("Invalid number of parts: " + parts);
+	}
+	
+	int[] prefixSums = this.prefixSums();
+	long total = prefixSums[_store.size()];
+	
+	IntegerSequence[] result = new IntegerSequence[parts];
+	for (int iPart = 0; iPart < parts; iPart++) {
+	    int fromRank = (int)((total * iPart) / parts);
+	    int toRank = (int)((total * (iPart + 1)) / parts);
+	    if (fromRank == toRank) {
+		result[iPart] = _factory.getSequence();
+		continue;
+	    }
+	    int first = this.rankInterval(prefixSums, fromRank);
+	    int last = this.rankInterval(prefixSums, toRank - 1);
+	    int firstStart = _store.start(first) + (fromRank - prefixSums[first]);
+	    int lastEnd = _store.start(last) + ((toRank - 1) - prefixSums[last]);
+	    result[iPart] = _factory.getTrustedSequence(_store.slice(first, (last - first) + 1, firstStart, lastEnd));
+	}
+	return result;
+    }
+
+    /**
+     * The store that holds the intervals of this sequence.
+     *
+     * @return 
+     */
+    IntervalStore store() {
+	
+	return _store;
+    }
+
+    /**
+     * Constant-size summary of this sequence. The summary is computed on
+     * first use and cached. Set operations consult the occupancy masks only
+     * if the summaries of both operands have been computed, e.g., call this
+     * method once for a sequence that is tested against many others.
+     *
+     * @return 
+     */
+    public IntegerSequenceSummary summary() {
+	
+	IntegerSequenceSummary summary = _summary;
+	if (summary == null) {
+	    summary = new IntegerSequenceSummary(this);
+	    _summary = summary;
+	}
+	return summary;
+    }
+
+    /**
+     * Returns a new sequence that contains the values that are in exactly one
+     * of the two sequences. Computed in a single merge pass over both
+     * sequences. Output intervals that become adjacent are merged.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public IntegerSequence symmetricDifference(IntegerSequence sequence) {
+	
+	int sizeI = _store.size();
+	int sizeJ = sequence.intervals();
+	if (sizeJ == 0) {
+	    return this;
+	} else if (sizeI == 0) {
+	    return _factory.getTrustedSequence(sequence.store());
+	}
+	
+	int[][] buffer = new int[sizeI + sizeJ][];
+	int size = 0;
+	
+	int idxI = 0;
+	int idxJ = 0;
+	int startI = _store.start(0);
+	int endI = _store.end(0);
+	int startJ = sequence.intervalStart(0);
+	int endJ = sequence.intervalEnd(0);
+	while ((idxI < sizeI) || (idxJ < sizeJ)) {
+	    int start;
+	    int end;
+	    if ((idxJ == sizeJ) || ((idxI < sizeI) && (endI < startJ))) {
+		start = startI;
+		end = endI;
+		if (++idxI < sizeI) {
+		    startI = _store.start(idxI);
+		    endI = _store.end(idxI);
+		}
+	    } else if ((idxI == sizeI) || (endJ < startI)) {
+		start = startJ;
+		end = endJ;
+		if (++idxJ < sizeJ) {
+		    startJ = sequence.intervalStart(idxJ);
+		    endJ = sequence.intervalEnd(idxJ);
+		}
+	    } else {
+		/*
+		 * The current intervals overlap. Output the part before the
+		 * overlap (if any) and remove the common part from both.
+		 */
+		start = Math.min(startI, startJ);
+		end = Math.max(startI, startJ) - 1;
+		int common = Math.min(endI, endJ);
+		if (endI == common) {
+		    if (++idxI < sizeI) {
+			startI = _store.start(idxI);
+			endI = _store.end(idxI);
+		    }
+		} else {
+		    startI = common + 1;
+		}
+		if (endJ == common) {
+		    if (++idxJ < sizeJ) {
+			startJ = sequence.intervalStart(idxJ);
+			endJ = sequence.intervalEnd(idxJ);
+		    }
+		} else {
+		    startJ = common + 1;
+		}
+		if (start > end) {
+		    continue;
+		}
+	    }
+	    if ((size > 0) && ((long)buffer[size - 1][1] + 1L == (long)start)) {
+		buffer[size - 1] = new int[]{buffer[size - 1][0], end};
+	    } else {
+		buffer[size++] = new int[]{start, end};
+	    }
+	}
+	
+	return _factory.getTrustedSequence(Arrays.copyOf(buffer, size));
+    }
+
+    /**
+     * Returns a bit set that contains the values of this sequence. Each
+     * interval is set with a single range operation. Raises an exception if
+     * the sequence contains negative values.
+     *
+     * @return 
+     */
+    public BitSet toBitSet() {
+	
+	if (_store.size() == 0) {
+	    return new BitSet();
+	} else if (_store.start(0) < 0) {
+	    throw new java.lang.IllegalArgumentException("Cannot convert negative value " + _store.start(0) + " to bit set");
+	}
+	
+	int lastEnd = _store.end(_store.size() - 1);
+	BitSet bits = new BitSet(lastEnd == Integer.MAX_VALUE ? lastEnd : lastEnd + 1);
+	for (int iInterval = 0; iInterval < _store.size(); iInterval++) {
+	    int end = _store.end(iInterval);
+	    if (end == Integer.MAX_VALUE) {
+		bits.set(_store.start(iInterval), end);
+		bits.set(end);
+	    } else {
+		bits.set(_store.start(iInterval), end + 1);
+	    }
+	}
+	return bits;
+    }
+
+    /**
+     * Returns the values of this sequence as a bitmap of 64-bit words. Bit i
+     * of word w represents the value w * 64 + i. The array has the minimal
+     * length that contains the last value. Each interval is written using
+     * word masks. Raises an exception if the sequence contains negative
+     * values.
+     *
+     * @return 
+     */
+    public long[] toWords() {
+	
+	if (_store.size() == 0) {
+	    return new long[0];
+	} else if (_store.start(0) < 0) {
+	    throw new java.lang.IllegalArgumentException("Cannot convert negative value " + _store.start(0) + " to bitmap");
+	}
+	
+	long[] words = new long[(_store.end(_store.size() - 1) >>> 6) + 1];
+	for (int iInterval = 0; iInterval < _store.size(); iInterval++) {
+	    int start = _store.start(iInterval);
+	    int end = _store.end(iInterval);
+	    int startWord = start >>> 6;
+	    int endWord = end >>> 6;
+	    long startMask = -1L << start;
+	    long endMask = -1L >>> (63 - (end & 63));
+	    if (startWord == endWord) {
+		words[startWord] |= (startMask & endMask);
+	    } else {
+		words[startWord] |= startMask;
+		Arrays.fill(words, startWord + 1, endWord, -1L);
+		words[endWord] |= endMask;
+	    }
+	}
+	return words;
+    }
+
     /**
      * Returns the union of the two integer sequences.
      * 
@@ -552,7 +1628,7 @@ public abstract class IntegerSequence {
 	    if (!last.contains(interval)) {
 		if ((last.end() + 1) >= interval.start()) {
 		    intervals.remove(intervals.size() - 1);
-		    intervals.add(_factory.getInterval(last.start(), interval.end()));
+		    intervals.add(_factory.getInterval(last.start(), Math.max(last.end(), interval.end())));
 		} else {
 		    intervals.add(interval);
 		}
@@ -561,9 +1637,9 @@ public abstract class IntegerSequence {
 	    while (index < sequence.intervals()) {
 		interval = sequence.interval(index++);
 		if (!last.contains(interval)) {
-		    if (interval.start() == last.end() + 1) {
+		    if (interval.start() <= last.end() + 1) {
 			intervals.remove(intervals.size() - 1);
-			intervals.add(_factory.getInterval(last.start(), interval.end()));
+			intervals.add(_factory.getInterval(last.start(), Math.max(last.end(), interval.end())));
 		    } else {
 			intervals.add(interval);
 		    }
@@ -578,4 +1654,17 @@ public abstract class IntegerSequence {
 	    }
 	}
     }
+
+    /**
+     * Returns the number of values that are contained in at least one of the
+     * two sequences. Derived from the length of both sequences and the length
+     * of their intersection.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public int unionLength(IntegerSequence sequence) {
+	
+	return (this.length() + sequence.length()) - this.intersectionLength(sequence);
+    }
 }
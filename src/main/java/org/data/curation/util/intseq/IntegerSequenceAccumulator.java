@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+import java.util.Arrays;
+
+/**
+ * Mutable accumulator for the union of many integer sequences. Added
+ * sequences and intervals are collected in a pending buffer. When the pending
+ * buffer contains at least as many intervals as the merged result, the
+ * pending intervals are sorted and merged with the result in a single pass.
+ * Each interval takes part in a logarithmic number of merges. The total cost
+ * is therefore O(n log n) for n added intervals, independent of the number
+ * of added sequences.
+ *
+ * The accumulator is not thread-safe.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceAccumulator {
+
+    private static final int MIN_PENDING = 64;
+
+    private final IntegerSequenceFactory _factory;
+    private int[] _merged;
+    private int _mergedSize;
+    private long[] _pending;
+    private int _pendingSize;
+
+    /**
+     * Initialize an empty accumulator. The factory is used to create the
+     * result sequence.
+     *
+     * @param factory 
+     */
+    public IntegerSequenceAccumulator(IntegerSequenceFactory factory) {
+	
+	_factory = factory;
+	
+	_merged = new int[32];
+	_mergedSize = 0;
+	_pending = new long[MIN_PENDING];
+	_pendingSize = 0;
+    }
+
+    /**
+     * Add all values of the given sequence.
+     *
+     * @param sequence 
+     */
+    public void add(IntegerSequence sequence) {
+	
+	for (int iInterval = 0; iInterval < sequence.intervals(); iInterval++) {
+	    this.addInterval(sequence.intervalStart(iInterval), sequence.intervalEnd(iInterval));
+	}
+    }
+
+    /**
+     * Add all values in the interval start-end (including both bounds).
+     *
+     * @param start 
+     * @param end 
+     */
+    public void add(int start, int end) {
+	
+	if (start > end) {
+	    throw new java.lang.IllegalArgumentException("TimeInterval [" + start + "-" + end + "] is invalid.");
+	}
+	this.addInterval(start, end);
+    }
+
+    /**
+     * Add a valid interval to the pending buffer. Merges the pending
+     * intervals if the buffer is full.
+     *
+     * @param start 
+     * @param end 
+     */
+    private void addInterval(int start, int end) {
+	
+	if (_pendingSize == _pending.length) {
+	    if (_pendingSize >= (_mergedSize / 2)) {
+		this.merge();
+	    } else {
+		_pending = Arrays.copyOf(_pending, _pending.length * 2);
+	    }
+	}
+	_pending[_pendingSize++] = (((long)start) << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Remove all values from the accumulator.
+     */
+    public void clear() {
+	
+	_mergedSize = 0;
+	_pendingSize = 0;
+    }
+
+    /**
+     * Sort the pending intervals and merge them with the merged result.
+     */
+    private void merge() {
+	
+	if (_pendingSize == 0) {
+	    return;
+	}
+	
+	Arrays.sort(_pending, 0, _pendingSize);
+	
+	int[] result = new int[Math.max((_mergedSize + (_pendingSize * 2)), 32)];
+	int size = 0;
+	
+	int idxI = 0;
+	int idxJ = 0;
+	int sizeI = _mergedSize / 2;
+	while ((idxI < sizeI) || (idxJ < _pendingSize)) {
+	    int start;
+	    int end;
+	    if ((idxJ == _pendingSize) || ((idxI < sizeI) && (_merged[idxI * 2] <= (int)(_pending[idxJ] >> 32)))) {
+		start = _merged[idxI * 2];
+		end = _merged[(idxI * 2) + 1];
+		idxI++;
+	    } else {
+		start = (int)(_pending[idxJ] >> 32);
+		end = (int)_pending[idxJ];
+		idxJ++;
+	    }
+	    if ((size > 0) && ((long)start <= (long)result[size - 1] + 1L)) {
+		if (end > result[size - 1]) {
+		    result[size - 1] = end;
+		}
+	    } else {
+		result[size++] = start;
+		result[size++] = end;
+	    }
+	}
+	
+	_merged = result;
+	_mergedSize = size;
+	_pendingSize = 0;
+    }
+
+    /**
+     * Get the union of all added values as an integer sequence. The
+     * accumulator remains valid and more values can be added.
+     *
+     * @return 
+     */
+    public IntegerSequence toSequence() {
+	
+	this.merge();
+	
+	int[][] intervals = new int[_mergedSize / 2][];
+	for (int iInterval = 0; iInterval < intervals.length; iInterval++) {
+	    intervals[iInterval] = new int[]{_merged[iInterval * 2], _merged[(iInterval * 2) + 1]};
+	}
+	return _factory.getTrustedSequence(intervals);
+    }
+}
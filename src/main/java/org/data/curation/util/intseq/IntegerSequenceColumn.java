@@ -0,0 +1,413 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Column of integer sequences. Stores the intervals of all rows in a single
+ * array of interval bounds. The intervals of row i are the intervals between
+ * offsets[i] and offsets[i + 1]. The start of interval k is stored at
+ * position 2k in the bounds array and the end at position 2k + 1.
+ *
+ * Rows are appended to the column. Operations on individual rows or on all
+ * rows in the column work directly on the bounds array without instantiating
+ * sequence or interval objects. All rows share the factory of the column that
+ * is used to materialize rows as integer sequences.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceColumn {
+
+    private int[] _bounds;
+    private final IntegerSequenceFactory _factory;
+    private int[] _offsets;
+    private int _rows;
+
+    /**
+     * Initialize an empty column with given initial capacity for rows and
+     * intervals.
+     *
+     * @param factory 
+     * @param rowCapacity 
+     * @param intervalCapacity 
+     */
+    public IntegerSequenceColumn(IntegerSequenceFactory factory, int rowCapacity, int intervalCapacity) {
+	
+	_factory = factory;
+	
+	_bounds = new int[Math.max(intervalCapacity, 1) * 2];
+	_offsets = new int[Math.max(rowCapacity, 1) + 1];
+	_rows = 0;
+    }
+
+    /**
+     * Initialize an empty column.
+     *
+     * @param factory 
+     */
+    public IntegerSequenceColumn(IntegerSequenceFactory factory) {
+	
+	this(factory, 16, 16);
+    }
+
+    /**
+     * Append the given integer sequence as a new row to the column. Returns
+     * the index of the new row.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public int add(IntegerSequence sequence) {
+	
+	int count = sequence.intervals();
+	this.ensureCapacity(count);
+	
+	int pos = _offsets[_rows] * 2;
+	for (int iInterval = 0; iInterval < count; iInterval++) {
+	    _bounds[pos++] = sequence.intervalStart(iInterval);
+	    _bounds[pos++] = sequence.intervalEnd(iInterval);
+	}
+	_offsets[_rows + 1] = _offsets[_rows] + count;
+	
+	return _rows++;
+    }
+
+    /**
+     * Append a new row with the intervals in the given array of interval
+     * bounds. Expects the intervals to be valid. Returns the index of the new
+     * row.
+     *
+     * @param bounds 
+     * @param count 
+     * @return 
+     */
+    int add(int[] bounds, int count) {
+	
+	this.ensureCapacity(count);
+	
+	System.arraycopy(bounds, 0, _bounds, _offsets[_rows] * 2, count * 2);
+	_offsets[_rows + 1] = _offsets[_rows] + count;
+	
+	return _rows++;
+    }
+
+    /**
+     * Returns true if the sequence in the given row contains the given
+     * value.
+     *
+     * @param row 
+     * @param value 
+     * @return 
+     */
+    public boolean contains(int row, int value) {
+	
+	this.checkRow(row);
+	
+	return IntervalKernels.contains(_bounds, _offsets[row], _offsets[row + 1], value);
+    }
+
+    /**
+     * Returns the set of row indexes for those sequences that contain the
+     * given value.
+     *
+     * @param value 
+     * @return 
+     */
+    public BitSet contains(int value) {
+	
+	BitSet rows = new BitSet(_rows);
+	
+	for (int iRow = 0; iRow < _rows; iRow++) {
+	    if (IntervalKernels.contains(_bounds, _offsets[iRow], _offsets[iRow + 1], value)) {
+		rows.set(iRow);
+	    }
+	}
+	
+	return rows;
+    }
+
+    /**
+     * Count the number of rows that contain the given value. Scans the
+     * intervals of all rows in a single pass.
+     *
+     * @param value 
+     * @return 
+     */
+    public int countContaining(int value) {
+	
+	return IntervalKernels.countContaining(_bounds, 0, _offsets[_rows], value);
+    }
+
+    /**
+     * Raise an exception if the given row index is out of bounds.
+     *
+     * @param row 
+     */
+    private void checkRow(int row) {
+	
+	if ((row < 0) || (row >= _rows)) {
+	    throw new java.lang.IndexOutOfBoundsException("Row " + row + " not in column of size " + _rows);
+	}
+    }
+
+    /**
+     * Ensure that the column has capacity for an additional row with the
+     * given number of intervals.
+     *
+     * @param intervals 
+     */
+    private void ensureCapacity(int intervals) {
+	
+	if (_rows + 2 > _offsets.length) {
+	    _offsets = Arrays.copyOf(_offsets, _offsets.length * 2);
+	}
+	int required = (_offsets[_rows] + intervals) * 2;
+	if (required > _bounds.length) {
+	    _bounds = Arrays.copyOf(_bounds, Math.max(required, _bounds.length * 2));
+	}
+    }
+
+    /**
+     * Estimated number of bytes that are occupied by the column. Includes
+     * the unused capacity of the arrays. The factory is shared and not
+     * included.
+     *
+     * @return 
+     */
+    public long estimatedSizeInBytes() {
+	
+	long size = IntervalStore.align(IntervalStore.OBJECT_HEADER + (3L * IntervalStore.REFERENCE) + 4L);
+	size += IntervalStore.align(IntervalStore.ARRAY_HEADER + (4L * _bounds.length));
+	size += IntervalStore.align(IntervalStore.ARRAY_HEADER + (4L * _offsets.length));
+	return size;
+    }
+
+    /**
+     * The factory that is used to materialize rows as integer sequences.
+     *
+     * @return 
+     */
+    public IntegerSequenceFactory factory() {
+	
+	return _factory;
+    }
+
+    /**
+     * Get the sequence in the given row as an integer sequence object.
+     *
+     * @param row 
+     * @return 
+     */
+    public IntegerSequence get(int row) {
+	
+	this.checkRow(row);
+	
+	int[][] intervals = new int[_offsets[row + 1] - _offsets[row]][];
+	int pos = _offsets[row] * 2;
+	for (int iInterval = 0; iInterval < intervals.length; iInterval++) {
+	    intervals[iInterval] = new int[]{_bounds[pos], _bounds[pos + 1]};
+	    pos += 2;
+	}
+	return _factory.getSequence(intervals);
+    }
+
+    /**
+     * Returns the intersection of the sequence in the given row with the
+     * given probe sequence.
+     *
+     * @param row 
+     * @param probe 
+     * @return 
+     */
+    public IntegerSequence intersect(int row, IntegerSequence probe) {
+	
+	IntegerSequenceColumn result = new IntegerSequenceColumn(_factory, 1, this.intervals(row));
+	this.intersect(row, probe, result);
+	return result.get(0);
+    }
+
+    /**
+     * Returns a column that contains the intersection of each row in this
+     * column with the given probe sequence. Row i in the result corresponds to
+     * row i in this column.
+     *
+     * @param probe 
+     * @return 
+     */
+    public IntegerSequenceColumn intersect(IntegerSequence probe) {
+	
+	IntegerSequenceColumn result = new IntegerSequenceColumn(_factory, _rows, 16);
+	
+	for (int iRow = 0; iRow < _rows; iRow++) {
+	    this.intersect(iRow, probe, result);
+	}
+	
+	return result;
+    }
+
+    /**
+     * Append the intersection of the given row and probe sequence as a new
+     * row to the given result column.
+     *
+     * @param row 
+     * @param probe 
+     * @param result 
+     */
+    private void intersect(int row, IntegerSequence probe, IntegerSequenceColumn result) {
+	
+	this.checkRow(row);
+	
+	int idxI = _offsets[row];
+	int endI = _offsets[row + 1];
+	int idxJ = 0;
+	int endJ = probe.intervals();
+	
+	int count = 0;
+	while ((idxI < endI) && (idxJ < endJ)) {
+	    int startI = _bounds[idxI * 2];
+	    int stopI = _bounds[idxI * 2 + 1];
+	    int startJ = probe.intervalStart(idxJ);
+	    int stopJ = probe.intervalEnd(idxJ);
+	    if (stopI < startJ) {
+		idxI++;
+	    } else if (startI > stopJ) {
+		idxJ++;
+	    } else {
+		int end = Math.min(stopI, stopJ);
+		result.ensureCapacity(count + 1);
+		int pos = (result._offsets[result._rows] + count) * 2;
+		result._bounds[pos] = Math.max(startI, startJ);
+		result._bounds[pos + 1] = end;
+		count++;
+		if (stopI <= end) {
+		    idxI++;
+		}
+		if (stopJ <= end) {
+		    idxJ++;
+		}
+	    }
+	}
+	
+	result.ensureCapacity(count);
+	result._offsets[result._rows + 1] = result._offsets[result._rows] + count;
+	result._rows++;
+    }
+
+    /**
+     * The number of intervals for the sequence in the given row.
+     *
+     * @param row 
+     * @return 
+     */
+    public int intervals(int row) {
+	
+	this.checkRow(row);
+	
+	return _offsets[row + 1] - _offsets[row];
+    }
+
+    /**
+     * Returns the total number of integer values for the sequence in the given
+     * row.
+     *
+     * @param row 
+     * @return 
+     */
+    public int length(int row) {
+	
+	this.checkRow(row);
+	
+	return (int)IntervalKernels.sumLengths(_bounds, _offsets[row], _offsets[row + 1]);
+    }
+
+    /**
+     * Returns an array containing the total number of integer values for the
+     * sequences in each row of the column.
+     *
+     * @return 
+     */
+    public int[] lengths() {
+	
+	int[] lengths = new int[_rows];
+	
+	for (int iRow = 0; iRow < _rows; iRow++) {
+	    lengths[iRow] = (int)IntervalKernels.sumLengths(_bounds, _offsets[iRow], _offsets[iRow + 1]);
+	}
+	
+	return lengths;
+    }
+
+    /**
+     * Returns true if the sequence in the given row overlaps with the given
+     * probe sequence.
+     *
+     * @param row 
+     * @param probe 
+     * @return 
+     */
+    public boolean overlap(int row, IntegerSequence probe) {
+	
+	this.checkRow(row);
+	
+	int[] bounds = IntervalKernels.pack(probe);
+	return IntervalKernels.overlap(_bounds, _offsets[row], _offsets[row + 1], bounds, 0, probe.intervals());
+    }
+
+    /**
+     * Returns the set of row indexes for those sequences that overlap with the
+     * given probe sequence. The bounds of the probe are copied once into a
+     * packed array that is then compared against each row.
+     *
+     * @param probe 
+     * @return 
+     */
+    public BitSet overlap(IntegerSequence probe) {
+	
+	BitSet rows = new BitSet(_rows);
+	
+	int[] bounds = IntervalKernels.pack(probe);
+	for (int iRow = 0; iRow < _rows; iRow++) {
+	    if (IntervalKernels.overlap(_bounds, _offsets[iRow], _offsets[iRow + 1], bounds, 0, probe.intervals())) {
+		rows.set(iRow);
+	    }
+	}
+	
+	return rows;
+    }
+
+    /**
+     * The number of rows in the column.
+     *
+     * @return 
+     */
+    public int rows() {
+	
+	return _rows;
+    }
+
+    /**
+     * Returns the total number of integer values over all rows in the column.
+     * Sums the interval bounds of all rows in a single pass.
+     *
+     * @return 
+     */
+    public long totalLength() {
+	
+	return IntervalKernels.sumLengths(_bounds, 0, _offsets[_rows]);
+    }
+}
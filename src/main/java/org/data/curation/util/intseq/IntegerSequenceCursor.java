@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Forward-only cursor over the intervals of an integer sequence. The cursor
+ * is positioned before the first interval when created. It is moved either to
+ * the next interval or forward to the first interval that ends at or after a
+ * given value. The latter uses galloping search, i.e., the cost of a move is
+ * logarithmic in the number of intervals that are skipped.
+ *
+ * Cursors allow to join multiple sequences by leapfrogging: the cursor that
+ * is behind is advanced to the start of the current interval of the cursor
+ * that is ahead until all cursors are positioned on overlapping intervals.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceCursor {
+
+    private int _index;
+    private final IntegerSequence _sequence;
+
+    /**
+     * Initialize the cursor. The cursor is positioned before the first
+     * interval of the sequence.
+     *
+     * @param sequence 
+     */
+    public IntegerSequenceCursor(IntegerSequence sequence) {
+	
+	_sequence = sequence;
+	_index = -1;
+    }
+
+    /**
+     * Move the cursor to the first interval that ends at or after the given
+     * value. The cursor is never moved backwards, i.e., if the current
+     * interval ends at or after the given value the cursor remains at the
+     * current interval. Returns false if no such interval exists. The cursor
+     * is exhausted in this case.
+     *
+     * @param value 
+     * @return 
+     */
+    public boolean advanceTo(int value) {
+	
+	if (_index >= _sequence.intervals()) {
+	    return false;
+	} else if ((_index >= 0) && (_sequence.intervalEnd(_index) >= value)) {
+	    return true;
+	}
+	
+	_index = _sequence.gallop(value, Math.max(_index, 0));
+	
+	return (_index < _sequence.intervals());
+    }
+
+    /**
+     * Raise an exception if the cursor is not positioned on an interval.
+     */
+    private void checkPosition() {
+	
+	if ((_index < 0) || (_index >= _sequence.intervals())) {
+	    throw new java.lang.IllegalStateException("Cursor is not positioned on an interval");
+	}
+    }
+
+    /**
+     * The end of the interval at the current cursor position.
+     *
+     * @return 
+     */
+    public int currentEnd() {
+	
+	this.checkPosition();
+	
+	return _sequence.intervalEnd(_index);
+    }
+
+    /**
+     * The start of the interval at the current cursor position.
+     *
+     * @return 
+     */
+    public int currentStart() {
+	
+	this.checkPosition();
+	
+	return _sequence.intervalStart(_index);
+    }
+
+    /**
+     * The index of the interval at the current cursor position. The index is
+     * -1 before the first call to nextInterval() or advanceTo() and equal to
+     * the number of intervals in the sequence if the cursor is exhausted.
+     *
+     * @return 
+     */
+    public int index() {
+	
+	return _index;
+    }
+
+    /**
+     * Returns true if the cursor has moved past the last interval.
+     *
+     * @return 
+     */
+    public boolean isExhausted() {
+	
+	return (_index >= _sequence.intervals());
+    }
+
+    /**
+     * Move the cursor to the next interval. Returns false if the cursor has
+     * moved past the last interval.
+     *
+     * @return 
+     */
+    public boolean nextInterval() {
+	
+	if (_index < _sequence.intervals()) {
+	    _index++;
+	}
+	
+	return (_index < _sequence.intervals());
+    }
+
+    /**
+     * The sequence the cursor iterates over.
+     *
+     * @return 
+     */
+    public IntegerSequence sequence() {
+	
+	return _sequence;
+    }
+}
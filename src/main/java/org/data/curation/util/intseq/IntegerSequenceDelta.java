@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Edit script that transforms a source integer sequence into a target
+ * sequence. The delta consists of the number of leading intervals that both
+ * sequences share and the list of target intervals that follow the shared
+ * prefix. Successive versions of a sequence usually differ only in the last
+ * interval, i.e., the delta contains a single interval in most cases.
+ *
+ * Deltas are computed and applied using the computeDelta() and applyDelta()
+ * methods of the integer sequence. The byte representation encodes all
+ * numbers as variable-length integers. Interval bounds are encoded as
+ * differences to the previous bound.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceDelta {
+
+    private final int[][] _intervals;
+    private final int _prefix;
+    private final int _sourceIntervals;
+
+    /**
+     * Initialize the delta. Expects a valid list of intervals, i.e., sorted
+     * and neither adjacent nor overlapping.
+     *
+     * @param sourceIntervals 
+     * @param prefix 
+     * @param intervals 
+     */
+    IntegerSequenceDelta(int sourceIntervals, int prefix, int[][] intervals) {
+	
+	if ((prefix < 0) || (prefix > sourceIntervals)) {
+	    throw new java.lang.IllegalArgumentException("Invalid prefix length " + prefix + " for sequence with " + sourceIntervals + " intervals");
+	}
+	
+	_sourceIntervals = sourceIntervals;
+	_prefix = prefix;
+	_intervals = intervals;
+    }
+
+    /**
+     * Decode a delta from a byte array that was generated by toByteArray().
+     *
+     * @param bytes 
+     * @return 
+     */
+    public static IntegerSequenceDelta fromByteArray(byte[] bytes) {
+	
+	int[] pos = new int[]{0};
+	
+	int sourceIntervals = (int)readLong(bytes, pos);
+	int prefix = (int)readLong(bytes, pos);
+	int count = (int)readLong(bytes, pos);
+	if ((sourceIntervals < 0) || (prefix < 0) || (prefix > sourceIntervals)) {
+	    throw new java.lang.IllegalArgumentException("Invalid prefix of " + prefix + " intervals for source with " + sourceIntervals + " intervals");
+	} else if ((count < 0) || (count > bytes.length)) {
+	    throw new java.lang.IllegalArgumentException("Invalid number of intervals " + count);
+	}
+	
+	int[][] intervals = new int[count][];
+	long prev = 0;
+	for (int iInterval = 0; iInterval < count; iInterval++) {
+	    long start;
+	    if (iInterval == 0) {
+		long value = readLong(bytes, pos);
+		start = (value >>> 1) ^ -(value & 1);
+	    } else {
+		start = prev + readBound(bytes, pos, "gap") + 2;
+	    }
+	    long end = start + readBound(bytes, pos, "length");
+	    if ((start < Integer.MIN_VALUE) || (end > Integer.MAX_VALUE) || (end < start)) {
+		throw new java.lang.IllegalArgumentException("Invalid interval [" + start + "-" + end + "]");
+	    } else if ((iInterval > 0) && (start < prev + 2)) {
+		throw new java.lang.IllegalArgumentException("Adjacent or overlapping intervals at [" + start + "-" + end + "]");
+	    }
+	    intervals[iInterval] = new int[]{(int)start, (int)end};
+	    prev = end;
+	}
+	if (pos[0] != bytes.length) {
+	    throw new java.lang.IllegalArgumentException("Unexpected " + (bytes.length - pos[0]) + " trailing bytes");
+	}
+	
+	return new IntegerSequenceDelta(sourceIntervals, prefix, intervals);
+    }
+
+    /**
+     * The end of the interval at the given index position in the list of
+     * intervals that follow the shared prefix.
+     *
+     * @param index 
+     * @return 
+     */
+    public int intervalEnd(int index) {
+	
+	return _intervals[index][1];
+    }
+
+    /**
+     * The start of the interval at the given index position in the list of
+     * intervals that follow the shared prefix.
+     *
+     * @param index 
+     * @return 
+     */
+    public int intervalStart(int index) {
+	
+	return _intervals[index][0];
+    }
+
+    /**
+     * The number of intervals that follow the shared prefix.
+     *
+     * @return 
+     */
+    public int intervals() {
+	
+	return _intervals.length;
+    }
+
+    /**
+     * The number of leading intervals that are shared by source and target.
+     *
+     * @return 
+     */
+    public int prefixLength() {
+	
+	return _prefix;
+    }
+
+    /**
+     * Read a variable-length encoded interval gap or length. Raises an
+     * exception if the value is negative or exceeds the range of unsigned
+     * integers, i.e., if it cannot be part of a valid delta.
+     *
+     * @param bytes 
+     * @param pos 
+     * @param name 
+     * @return 
+     */
+    private static long readBound(byte[] bytes, int[] pos, String name) {
+	
+	long value = readLong(bytes, pos);
+	if ((value < 0) || (value > 0xFFFFFFFFL)) {
+	    throw new java.lang.IllegalArgumentException("Invalid interval " + name + " " + value);
+	}
+	return value;
+    }
+
+    /**
+     * Read a variable-length encoded non-negative number.
+     *
+     * @param bytes 
+     * @param pos 
+     * @return 
+     */
+    private static long readLong(byte[] bytes, int[] pos) {
+	
+	long value = 0;
+	int shift = 0;
+	while (true) {
+	    if (pos[0] >= bytes.length) {
+		throw new java.lang.IllegalArgumentException("Unexpected end of delta");
+	    } else if (shift > 63) {
+		throw new java.lang.IllegalArgumentException("Malformed variable-length number");
+	    }
+	    byte b = bytes[pos[0]++];
+	    value |= ((long)(b & 0x7F)) << shift;
+	    if ((b & 0x80) == 0) {
+		return value;
+	    }
+	    shift += 7;
+	}
+    }
+
+    /**
+     * The number of intervals in the source sequence.
+     *
+     * @return 
+     */
+    public int sourceIntervals() {
+	
+	return _sourceIntervals;
+    }
+
+    /**
+     * Encode the delta as an array of bytes.
+     *
+     * @return 
+     */
+    public byte[] toByteArray() {
+	
+	ByteArrayOutputStream out = new ByteArrayOutputStream(8 + _intervals.length * 4);
+	
+	writeLong(out, _sourceIntervals);
+	writeLong(out, _prefix);
+	writeLong(out, _intervals.length);
+	long prev = 0;
+	for (int iInterval = 0; iInterval < _intervals.length; iInterval++) {
+	    long start = _intervals[iInterval][0];
+	    long end = _intervals[iInterval][1];
+	    if (iInterval == 0) {
+		writeLong(out, (start << 1) ^ (start >> 63));
+	    } else {
+		writeLong(out, start - prev - 2);
+	    }
+	    writeLong(out, end - start);
+	    prev = end;
+	}
+	
+	return out.toByteArray();
+    }
+
+    /**
+     * Write a non-negative number as a variable-length encoded sequence of
+     * bytes.
+     *
+     * @param out 
+     * @param value 
+     */
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+	
+	long rest = value;
+	while ((rest & ~0x7FL) != 0) {
+	    out.write((int)((rest & 0x7F) | 0x80));
+	    rest >>>= 7;
+	}
+	out.write((int)rest);
+    }
+}
@@ -0,0 +1,518 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+import java.util.ArrayList;
+
+/**
+ * Lazy set expression over integer sequences. An expression is a tree of
+ * union, intersection, difference, and complement operators with integer
+ * sequences at the leaves. Expressions are not evaluated when they are
+ * created. Each terminal operation evaluates the whole tree in a single
+ * streaming merge. Every operator produces its result intervals one at a time
+ * in ascending order. No intermediate sequences are materialized.
+ *
+ * Terminal operations stop the evaluation as soon as the result is known,
+ * e.g., isEmpty() only computes the first interval of the result.
+ *
+ * Expressions are immutable and may be evaluated any number of times.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public abstract class IntegerSequenceExpression {
+
+    private final IntegerSequenceFactory _factory;
+
+    /**
+     * Initialize the factory that is used to materialize the result.
+     *
+     * @param factory 
+     */
+    IntegerSequenceExpression(IntegerSequenceFactory factory) {
+	
+	_factory = factory;
+    }
+
+    /**
+     * Expression for the values in the range from-to (including both bounds)
+     * that are not in the result of this expression.
+     *
+     * @param from 
+     * @param to 
+     * @return 
+     */
+    public IntegerSequenceExpression complement(int from, int to) {
+	
+	if (from > to) {
+	    throw new java.lang.IllegalArgumentException("Invalid range " + from + "-" + to);
+	}
+	return new DifferenceExpression(new RangeExpression(_factory, from, to), this);
+    }
+
+    /**
+     * Returns true if the result of this expression contains the given value.
+     *
+     * @param value 
+     * @return 
+     */
+    public boolean contains(int value) {
+	
+	IntervalStream stream = this.stream();
+	while (stream.next()) {
+	    if (stream.end() >= value) {
+		return (stream.start() <= value);
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Expression for the values in the result of this expression that are
+     * not in the result of the given expression.
+     *
+     * @param expression 
+     * @return 
+     */
+    public IntegerSequenceExpression difference(IntegerSequenceExpression expression) {
+	
+	return new DifferenceExpression(this, expression);
+    }
+
+    /**
+     * Expression for the values in the result of this expression that are
+     * not in the given sequence.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public IntegerSequenceExpression difference(IntegerSequence sequence) {
+	
+	return this.difference(of(sequence));
+    }
+
+    /**
+     * The first value in the result of this expression. Raises an exception
+     * if the result is empty.
+     *
+     * @return 
+     */
+    public int first() {
+	
+	IntervalStream stream = this.stream();
+	if (!stream.next()) {
+	    throw new java.lang.IllegalStateException("Expression result is empty");
+	}
+	return stream.start();
+    }
+
+    /**
+     * Expression for the values that are in the results of both this and
+     * the given expression.
+     *
+     * @param expression 
+     * @return 
+     */
+    public IntegerSequenceExpression intersect(IntegerSequenceExpression expression) {
+	
+	return new IntersectExpression(this, expression);
+    }
+
+    /**
+     * Expression for the values that are in the result of this expression
+     * and in the given sequence.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public IntegerSequenceExpression intersect(IntegerSequence sequence) {
+	
+	return this.intersect(of(sequence));
+    }
+
+    /**
+     * Returns true if the result of this expression is empty.
+     *
+     * @return 
+     */
+    public boolean isEmpty() {
+	
+	return !this.stream().next();
+    }
+
+    /**
+     * The number of values in the result of this expression.
+     *
+     * @return 
+     */
+    public int length() {
+	
+	int length = 0;
+	IntervalStream stream = this.stream();
+	while (stream.next()) {
+	    length += (stream.end() - stream.start()) + 1;
+	}
+	return length;
+    }
+
+    /**
+     * Expression that has the given sequence as its result.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public static IntegerSequenceExpression of(IntegerSequence sequence) {
+	
+	return new SequenceExpression(sequence);
+    }
+
+    /**
+     * Create a new stream over the intervals in the result of this
+     * expression.
+     *
+     * @return 
+     */
+    abstract IntervalStream stream();
+
+    /**
+     * Materialize the result of this expression as an integer sequence. Uses
+     * the factory of the left-most sequence in the expression.
+     *
+     * @return 
+     */
+    public IntegerSequence toSequence() {
+	
+	ArrayList<int[]> intervals = new ArrayList<>();
+	IntervalStream stream = this.stream();
+	while (stream.next()) {
+	    intervals.add(new int[]{stream.start(), stream.end()});
+	}
+	return _factory.getTrustedSequence(intervals.toArray(new int[intervals.size()][]));
+    }
+
+    /**
+     * Expression for the values that are in the result of this or the
+     * given expression.
+     *
+     * @param expression 
+     * @return 
+     */
+    public IntegerSequenceExpression union(IntegerSequenceExpression expression) {
+	
+	return new UnionExpression(this, expression);
+    }
+
+    /**
+     * Expression for the values that are in the result of this expression
+     * or in the given sequence.
+     *
+     * @param sequence 
+     * @return 
+     */
+    public IntegerSequenceExpression union(IntegerSequence sequence) {
+	
+	return this.union(of(sequence));
+    }
+
+    /**
+     * Stream of sorted intervals that are neither adjacent nor overlapping.
+     * The stream is positioned before the first interval when created.
+     */
+    abstract static class IntervalStream {
+	
+	protected int _end;
+	protected int _start;
+	
+	/**
+	 * End of the current interval.
+	 *
+	 * @return 
+	 */
+	int end() {
+	
+	    return _end;
+	}
+	
+	/**
+	 * Move to the next interval. Returns false if there are no more
+	 * intervals.
+	 *
+	 * @return 
+	 */
+	abstract boolean next();
+	
+	/**
+	 * Start of the current interval.
+	 *
+	 * @return 
+	 */
+	int start() {
+	
+	    return _start;
+	}
+    }
+
+    /**
+     * Values of the left expression that are not in the right expression.
+     */
+    private static class DifferenceExpression extends IntegerSequenceExpression {
+	
+	private final IntegerSequenceExpression _left;
+	private final IntegerSequenceExpression _right;
+	
+	DifferenceExpression(IntegerSequenceExpression left, IntegerSequenceExpression right) {
+	
+	    super(left._factory);
+	
+	    _left = left;
+	    _right = right;
+	}
+	
+	@Override
+	IntervalStream stream() {
+	
+	    final IntervalStream left = _left.stream();
+	    final IntervalStream right = _right.stream();
+	    return new IntervalStream() {
+		private boolean _hasCurrent = false;
+		private boolean _hasRight = right.next();
+		private int _currentStart;
+		private int _currentEnd;
+		@Override
+		boolean next() {
+		    while (true) {
+			if (!_hasCurrent) {
+			    if (!left.next()) {
+				return false;
+			    }
+			    _currentStart = left.start();
+			    _currentEnd = left.end();
+			    _hasCurrent = true;
+			}
+			while ((_hasRight) && (right.end() < _currentStart)) {
+			    _hasRight = right.next();
+			}
+			if ((!_hasRight) || (right.start() > _currentEnd)) {
+			    _start = _currentStart;
+			    _end = _currentEnd;
+			    _hasCurrent = false;
+			    return true;
+			}
+			/*
+			 * The current right interval overlaps the remaining
+			 * part of the current left interval. Output the part
+			 * before the right interval (if any) and continue
+			 * with the part after it.
+			 */
+			boolean found = false;
+			if (right.start() > _currentStart) {
+			    _start = _currentStart;
+			    _end = right.start() - 1;
+			    found = true;
+			}
+			if (right.end() >= _currentEnd) {
+			    _hasCurrent = false;
+			} else {
+			    _currentStart = right.end() + 1;
+			}
+			if (found) {
+			    return true;
+			}
+		    }
+		}
+	    };
+	}
+    }
+
+    /**
+     * Values that are in the results of both expressions.
+     */
+    private static class IntersectExpression extends IntegerSequenceExpression {
+	
+	private final IntegerSequenceExpression _left;
+	private final IntegerSequenceExpression _right;
+	
+	IntersectExpression(IntegerSequenceExpression left, IntegerSequenceExpression right) {
+	
+	    super(left._factory);
+	
+	    _left = left;
+	    _right = right;
+	}
+	
+	@Override
+	IntervalStream stream() {
+	
+	    final IntervalStream left = _left.stream();
+	    final IntervalStream right = _right.stream();
+	    return new IntervalStream() {
+		private boolean _hasLeft = left.next();
+		private boolean _hasRight = (_hasLeft) && (right.next());
+		@Override
+		boolean next() {
+		    while ((_hasLeft) && (_hasRight)) {
+			if (left.end() < right.start()) {
+			    _hasLeft = left.next();
+			} else if (right.end() < left.start()) {
+			    _hasRight = right.next();
+			} else {
+			    _start = Math.max(left.start(), right.start());
+			    _end = Math.min(left.end(), right.end());
+			    if (left.end() == _end) {
+				_hasLeft = left.next();
+			    }
+			    if (right.end() == _end) {
+				_hasRight = right.next();
+			    }
+			    return true;
+			}
+		    }
+		    return false;
+		}
+	    };
+	}
+    }
+
+    /**
+     * All values in a given range.
+     */
+    private static class RangeExpression extends IntegerSequenceExpression {
+	
+	private final int _from;
+	private final int _to;
+	
+	RangeExpression(IntegerSequenceFactory factory, int from, int to) {
+	
+	    super(factory);
+	
+	    _from = from;
+	    _to = to;
+	}
+	
+	@Override
+	IntervalStream stream() {
+	
+	    return new IntervalStream() {
+		private boolean _done = false;
+		@Override
+		boolean next() {
+		    if (_done) {
+			return false;
+		    }
+		    _start = _from;
+		    _end = _to;
+		    _done = true;
+		    return true;
+		}
+	    };
+	}
+    }
+
+    /**
+     * The values of an integer sequence.
+     */
+    private static class SequenceExpression extends IntegerSequenceExpression {
+	
+	private final IntegerSequence _sequence;
+	
+	SequenceExpression(IntegerSequence sequence) {
+	
+	    super(sequence.factory());
+	
+	    _sequence = sequence;
+	}
+	
+	@Override
+	IntervalStream stream() {
+	
+	    return new IntervalStream() {
+		private int _index = -1;
+		@Override
+		boolean next() {
+		    if (_index + 1 >= _sequence.intervals()) {
+			_index = _sequence.intervals();
+			return false;
+		    }
+		    _index++;
+		    _start = _sequence.intervalStart(_index);
+		    _end = _sequence.intervalEnd(_index);
+		    return true;
+		}
+	    };
+	}
+    }
+
+    /**
+     * Values that are in the result of at least one of two expressions.
+     */
+    private static class UnionExpression extends IntegerSequenceExpression {
+	
+	private final IntegerSequenceExpression _left;
+	private final IntegerSequenceExpression _right;
+	
+	UnionExpression(IntegerSequenceExpression left, IntegerSequenceExpression right) {
+	
+	    super(left._factory);
+	
+	    _left = left;
+	    _right = right;
+	}
+	
+	@Override
+	IntervalStream stream() {
+	
+	    final IntervalStream left = _left.stream();
+	    final IntervalStream right = _right.stream();
+	    return new IntervalStream() {
+		private boolean _hasLeft = left.next();
+		private boolean _hasRight = right.next();
+		@Override
+		boolean next() {
+		    if ((!_hasLeft) && (!_hasRight)) {
+			return false;
+		    }
+		    if ((_hasLeft) && ((!_hasRight) || (left.start() <= right.start()))) {
+			_start = left.start();
+			_end = left.end();
+			_hasLeft = left.next();
+		    } else {
+			_start = right.start();
+			_end = right.end();
+			_hasRight = right.next();
+		    }
+		    /*
+		     * Extend the current interval with all intervals from
+		     * either stream that overlap or are adjacent to it.
+		     */
+		    boolean extended = true;
+		    while (extended) {
+			extended = false;
+			if ((_hasLeft) && ((long)left.start() <= (long)_end + 1L)) {
+			    _end = Math.max(_end, left.end());
+			    _hasLeft = left.next();
+			    extended = true;
+			}
+			if ((_hasRight) && ((long)right.start() <= (long)_end + 1L)) {
+			    _end = Math.max(_end, right.end());
+			    _hasRight = right.next();
+			    extended = true;
+			}
+		    }
+		    return true;
+		}
+	    };
+	}
+    }
+}
@@ -15,7 +15,8 @@
  */
 package org.data.curation.util.intseq;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 
@@ -28,7 +29,191 @@ import java.util.List;
  * @author Heiko Mueller <heiko.mueller@nyu.edu>
  */
 public abstract class IntegerSequenceFactory {
-    
+
+    /**
+     * Maximum length of a word array that is converted into a sequence. Bit
+     * positions beyond this limit exceed the range of integers.
+     */
+    private static final int MAX_WORDS = 1 << 25;
+
+    /**
+     * Add an interval to a growing array of intervals. Returns the array
+     * that contains the interval.
+     *
+     * @param intervals 
+     * @param count 
+     * @param start 
+     * @param end 
+     * @return 
+     */
+    private static int[][] addInterval(int[][] intervals, int count, int start, int end) {
+	
+	int[][] result = intervals;
+	if (count == result.length) {
+	    result = Arrays.copyOf(result, count * 2);
+	}
+	result[count] = new int[]{start, end};
+	return result;
+    }
+
+    /**
+     * Transform the set bits in the given bit set into an integer sequence.
+     * Runs of set bits are located using nextSetBit() and nextClearBit(),
+     * i.e., the cost depends on the number of runs rather than the number of
+     * values.
+     *
+     * @param bits 
+     * @return 
+     */
+    public IntegerSequence fromBitSet(BitSet bits) {
+	
+	int[][] intervals = new int[16][];
+	int count = 0;
+	
+	int start = bits.nextSetBit(0);
+	while (start >= 0) {
+	    int end = bits.nextClearBit(start) - 1;
+	    intervals = addInterval(intervals, count++, start, end);
+	    if (end == Integer.MAX_VALUE) {
+		break;
+	    }
+	    start = bits.nextSetBit(end + 1);
+	}
+	return this.getTrustedSequence(Arrays.copyOf(intervals, count));
+    }
+
+    /**
+     * Transform a range of values in the given array into an integer
+     * sequence. The values in the range are expected to be sorted in
+     * ascending order. Duplicate values are ignored.
+     *
+     * The sequence is built in a single pass over the values. Intervals are
+     * only instantiated when a run of consecutive values ends.
+     *
+     * @param values 
+     * @param off 
+     * @param len 
+     * @return 
+     */
+    public IntegerSequence fromSorted(int[] values, int off, int len) {
+	
+	if ((off < 0) || (len < 0) || (off + len > values.length)) {
+	    throw new java.lang.IndexOutOfBoundsException("Invalid range [" + off + ", " + (off + len) + ") for array of length " + values.length);
+	}
+	
+	if (len == 0) {
+	    return this.getSequence();
+	}
+	
+	int[][] intervals = new int[Math.min(len, 16)][];
+	int count = 0;
+	
+	int start = values[off];
+	int end = start;
+	for (int iValue = off + 1; iValue < off + len; iValue++) {
+	    int value = values[iValue];
+	    if (value == end + 1) {
+		end = value;
+	    } else if (value > end) {
+		if (count == intervals.length) {
+		    intervals = Arrays.copyOf(intervals, Math.min(len, count * 2));
+		}
+		intervals[count++] = new int[]{start, end};
+		start = value;
+		end = value;
+	    } else if (value < end) {
+		throw new java.lang.IllegalArgumentException("Values not sorted at position " + iValue + ": " + value + " after " + end);
+	    }
+	}
+	if (count == intervals.length) {
+	    intervals = Arrays.copyOf(intervals, count + 1);
+	}
+	intervals[count++] = new int[]{start, end};
+	
+	if (count < intervals.length) {
+	    intervals = Arrays.copyOf(intervals, count);
+	}
+	return this.getTrustedSequence(intervals);
+    }
+
+    /**
+     * Transform the values in the given array into an integer sequence. The
+     * values may be in any order and may contain duplicates. The given array
+     * is not modified.
+     *
+     * @param values 
+     * @return 
+     */
+    public IntegerSequence fromUnsorted(int[] values) {
+	
+	int[] sorted = Arrays.copyOf(values, values.length);
+	Arrays.sort(sorted);
+	return this.fromSorted(sorted, 0, sorted.length);
+    }
+
+    /**
+     * Transform a bitmap of 64-bit words into an integer sequence. Bit i of
+     * word w represents the value w * 64 + i. Runs are extracted with word
+     * operations. Words that are all zeros or all ones are skipped with a
+     * single comparison, i.e., the cost depends on the number of runs and
+     * words rather than the number of values.
+     *
+     * @param words 
+     * @return 
+     */
+    public IntegerSequence fromWords(long[] words) {
+	
+	if (words.length > MAX_WORDS) {
+	    throw new java.lang.IllegalArgumentException("Bitmap with " + words.length + " words exceeds integer range");
+	}
+	
+	int[][] intervals = new int[16][];
+	int count = 0;
+	
+	int iWord = 0;
+	long word = (words.length > 0) ? words[0] : 0L;
+	while (iWord < words.length) {
+	    /* Skip to the next set bit */
+	    while (word == 0L) {
+		if (++iWord == words.length) {
+		    return this.getTrustedSequence(Arrays.copyOf(intervals, count));
+		}
+		word = words[iWord];
+	    }
+	    int start = (iWord << 6) + Long.numberOfTrailingZeros(word);
+	    /* Fill the trailing zeros and skip to the next clear bit */
+	    word |= (word - 1L);
+	    while (word == -1L) {
+		if (++iWord == words.length) {
+		    break;
+		}
+		word = words[iWord];
+	    }
+	    if (iWord == words.length) {
+		intervals = addInterval(intervals, count++, start, (int)(((long)iWord << 6) - 1L));
+		break;
+	    }
+	    int end = (iWord << 6) + Long.numberOfTrailingZeros(~word) - 1;
+	    intervals = addInterval(intervals, count++, start, end);
+	    /* Clear the run of trailing ones */
+	    word &= (word + 1L);
+	}
+	return this.getTrustedSequence(Arrays.copyOf(intervals, count));
+    }
+
+    /**
+     * Create the interval store for a new sequence. Expects the intervals to
+     * be sorted and neither adjacent nor overlapping. Implementations may
+     * override this method to choose implementation-specific layouts.
+     *
+     * @param intervals 
+     * @return 
+     */
+    IntervalStore encode(int[][] intervals) {
+	
+	return IntervalStore.encode(intervals);
+    }
+
     /**
      * Get implementation-specific interval instance for given array. Expects
      * an array with exactly two values, the first defining the interval start
@@ -63,6 +248,47 @@ public abstract class IntegerSequenceFactory {
 	return this.getInterval(new int[]{start, end});
     }
 
+    /**
+     * Number of sequences in the given collection that use the given memory
+     * layout. Used to inspect the sequences that are retained by an
+     * application, e.g., the rows of a column or the values of an index.
+     *
+     * @param sequences 
+     * @param layout 
+     * @return 
+     */
+    public static long getLayoutCount(Iterable<? extends IntegerSequence> sequences, IntegerSequenceLayout layout) {
+	
+	long count = 0;
+	for (IntegerSequence sequence : sequences) {
+	    if (sequence.layout() == layout) {
+		count++;
+	    }
+	}
+	return count;
+    }
+
+    /**
+     * Estimated total number of bytes that are occupied by the sequences in
+     * the given collection that use the given memory layout. The size of
+     * each sequence is given by estimatedSizeInBytes(). Sequences that occur
+     * more than once in the collection are counted for each occurrence.
+     *
+     * @param sequences 
+     * @param layout 
+     * @return 
+     */
+    public static long getLayoutSizeInBytes(Iterable<? extends IntegerSequence> sequences, IntegerSequenceLayout layout) {
+	
+	long size = 0;
+	for (IntegerSequence sequence : sequences) {
+	    if (sequence.layout() == layout) {
+		size += sequence.estimatedSizeInBytes();
+	    }
+	}
+	return size;
+    }
+
     /**
      * Get implementation-specific empty integer sequence.
      * 
@@ -103,12 +329,46 @@ public abstract class IntegerSequenceFactory {
      * @return 
      */
     public abstract IntegerSequence getSequence(List<IntegerInterval> intervals);
-    
+
+    /**
+     * Get implementation-specific integer sequence instance for an array of
+     * intervals that is known to be valid, i.e., the intervals are sorted and
+     * neither adjacent nor overlapping. Implementations may use the array
+     * without copying it and only check their implementation-specific
+     * constraints. The default implementation validates the intervals.
+     *
+     * @param intervals 
+     * @return 
+     */
+    IntegerSequence getTrustedSequence(int[][] intervals) {
+	
+	return this.getSequence(intervals);
+    }
+
+    /**
+     * Get implementation-specific integer sequence instance for an interval
+     * store that is known to be valid. The default implementation copies
+     * the intervals into an array. Implementations should override this
+     * method to use the store directly.
+     *
+     * @param store 
+     * @return 
+     */
+    IntegerSequence getTrustedSequence(IntervalStore store) {
+	
+	int[][] intervals = new int[store.size()][];
+	for (int iInterval = 0; iInterval < intervals.length; iInterval++) {
+	    intervals[iInterval] = store.interval(iInterval);
+	}
+	return this.getTrustedSequence(intervals);
+    }
+
     /**
      * Transform the given list of values to an integer sequence. Uses the given
      * factory implementation to generate intervals and sequences.
      * 
      * The list of values is expected to be sorted in ascending order.
+     * Values are unboxed into an array and transformed using fromSorted().
      * 
      * @param values
      * @param factory
@@ -116,22 +376,11 @@ public abstract class IntegerSequenceFactory {
      */
     public static IntegerSequence toSequence(List<Integer> values, IntegerSequenceFactory factory) {
 	
-	ArrayList<IntegerInterval> intervals = new ArrayList<>();
-
-	if (values.size() > 0) {
-	    IntegerInterval interval = factory.getInterval(values.get(0));
-	    for (int iValue = 1; iValue < values.size(); iValue++) {
-		int value = values.get(iValue);
-		if (value == interval.end() + 1) {
-		    interval = factory.getInterval(interval.start(), value);
-		} else {
-		    intervals.add(interval);
-		    interval = factory.getInterval(value);
-		}
-	    }
-	    intervals.add(interval);
+	int[] array = new int[values.size()];
+	for (int iValue = 0; iValue < array.length; iValue++) {
+	    array[iValue] = values.get(iValue);
 	}
 	
-	return factory.getSequence(intervals);
+	return factory.fromSorted(array, 0, array.length);
     }
 }
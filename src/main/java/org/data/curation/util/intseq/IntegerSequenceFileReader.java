@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for files of integer sequences. Each line of the file
+ * contains a record identifier and the interval string of a sequence of
+ * non-negative integers separated by a tab character, e.g., r1\t1-5,8,10-12.
+ * The interval string is empty for empty sequences.
+ *
+ * The reader reads blocks of bytes from a channel into a fixed buffer and
+ * parses interval strings directly from these bytes. The buffer only grows
+ * if a single line does not fit into it. Record identifiers are decoded only
+ * on request. The parsed intervals of the current line are available until
+ * the next call to next(). They can be materialized as a sequence or appended
+ * to a column without creating an intermediate sequence object.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceFileReader implements Closeable {
+
+    /**
+     * Default size of the read buffer in bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private int[] _bounds;
+    private final ReadableByteChannel _channel;
+    private byte[] _data;
+    private boolean _eof;
+    private final IntegerSequenceFactory _factory;
+    private int _idEnd;
+    private int _idStart;
+    private int _intervals;
+    private int _limit;
+    private long _lineNumber;
+    private int _pos;
+
+    /**
+     * Initialize the reader with the channel to read from, the factory for
+     * created sequences, and the initial buffer size.
+     *
+     * @param channel 
+     * @param factory 
+     * @param bufferSize 
+     */
+    public IntegerSequenceFileReader(ReadableByteChannel channel, IntegerSequenceFactory factory, int bufferSize) {
+	
+	_channel = channel;
+	_factory = factory;
+	
+	_data = new byte[Math.max(bufferSize, 16)];
+	_bounds = new int[32];
+	_eof = false;
+	_intervals = 0;
+	_limit = 0;
+	_lineNumber = 0;
+	_pos = 0;
+    }
+
+    /**
+     * Initialize the reader with the default buffer size.
+     *
+     * @param channel 
+     * @param factory 
+     */
+    public IntegerSequenceFileReader(ReadableByteChannel channel, IntegerSequenceFactory factory) {
+	
+	this(channel, factory, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Add the sequence in the current line as a new row to the given column.
+     * Returns the index of the new row.
+     *
+     * @param column 
+     * @return 
+     */
+    public int addTo(IntegerSequenceColumn column) {
+	
+	return column.add(_bounds, _intervals);
+    }
+
+    @Override
+    public void close() throws IOException {
+	
+	_channel.close();
+    }
+
+    /**
+     * Read more bytes from the channel. Moves the unprocessed bytes to the
+     * start of the buffer first. The buffer is enlarged if it is full.
+     *
+     * @throws IOException
+     */
+    private void fill() throws IOException {
+	
+	if (_pos > 0) {
+	    System.arraycopy(_data, _pos, _data, 0, _limit - _pos);
+	    _limit -= _pos;
+	    _pos = 0;
+	}
+	if (_limit == _data.length) {
+	    _data = Arrays.copyOf(_data, _data.length * 2);
+	}
+	int count = _channel.read(ByteBuffer.wrap(_data, _limit, _data.length - _limit));
+	if (count < 0) {
+	    _eof = true;
+	} else {
+	    _limit += count;
+	}
+    }
+
+    /**
+     * Number of the current line (starting at 1).
+     *
+     * @return 
+     */
+    public long lineNumber() {
+	
+	return _lineNumber;
+    }
+
+    /**
+     * Move to the next line. Empty lines are skipped. Returns false if the
+     * end of the channel has been reached.
+     *
+     * @return 
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+	
+	int searchFrom = _pos;
+	while (true) {
+	    int end = -1;
+	    for (int index = searchFrom; index < _limit; index++) {
+		if (_data[index] == '\n') {
+		    end = index;
+		    break;
+		}
+	    }
+	    if ((end == -1) && (_eof)) {
+		end = _limit;
+	    }
+	    if (end != -1) {
+		if (_pos == _limit) {
+		    return false;
+		}
+		int start = _pos;
+		_pos = Math.min(end + 1, _limit);
+		_lineNumber++;
+		if ((end > start) && (_data[end - 1] == '\r')) {
+		    end--;
+		}
+		if (end > start) {
+		    this.parse(start, end);
+		    return true;
+		}
+		searchFrom = _pos;
+		continue;
+	    }
+	    int scanned = _limit - _pos;
+	    this.fill();
+	    searchFrom = _pos + scanned;
+	}
+    }
+
+    /**
+     * Parse the line between the given positions in the buffer.
+     *
+     * @param start 
+     * @param end 
+     */
+    private void parse(int start, int end) {
+	
+	int pos = start;
+	while ((pos < end) && (_data[pos] != '\t')) {
+	    pos++;
+	}
+	if (pos == end) {
+	    throw new java.lang.IllegalArgumentException("Missing tab delimiter in line " + _lineNumber);
+	}
+	_idStart = start;
+	_idEnd = pos;
+	pos++;
+	
+	_intervals = 0;
+	long lastEnd = -2;
+	while (pos < end) {
+	    int intervalStart = 0;
+	    int digits = 0;
+	    while ((pos < end) && (_data[pos] >= '0') && (_data[pos] <= '9')) {
+		intervalStart = this.parseDigit(intervalStart, _data[pos++]);
+		digits++;
+	    }
+	    int intervalEnd = intervalStart;
+	    if ((pos < end) && (_data[pos] == '-')) {
+		pos++;
+		intervalEnd = 0;
+		int endDigits = 0;
+		while ((pos < end) && (_data[pos] >= '0') && (_data[pos] <= '9')) {
+		    intervalEnd = this.parseDigit(intervalEnd, _data[pos++]);
+		    endDigits++;
+		}
+		if (endDigits == 0) {
+		    digits = 0;
+		}
+	    }
+	    if ((digits == 0) || ((pos < end) && (_data[pos] != ','))) {
+		throw new java.lang.IllegalArgumentException("Invalid interval string in line " + _lineNumber);
+	    } else if (intervalStart > intervalEnd) {
+		throw new java.lang.IllegalArgumentException("TimeInterval [" + intervalStart + "-" + intervalEnd + "] is invalid in line " + _lineNumber);
+	    } else if (intervalStart <= lastEnd + 1) {
+		throw new java.lang.IllegalArgumentException("Adjacent or overlapping intervals in line " + _lineNumber);
+	    }
+	    if ((_intervals * 2) == _bounds.length) {
+		_bounds = Arrays.copyOf(_bounds, _bounds.length * 2);
+	    }
+	    _bounds[_intervals * 2] = intervalStart;
+	    _bounds[(_intervals * 2) + 1] = intervalEnd;
+	    _intervals++;
+	    lastEnd = intervalEnd;
+	    if (pos < end) {
+		pos++;
+		if (pos == end) {
+		    throw new java.lang.IllegalArgumentException("Invalid interval string in line " + _lineNumber);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Append a decimal digit to the given value. Raises an exception if the
+     * result exceeds the range of integers.
+     *
+     * @param value 
+     * @param digit 
+     * @return 
+     */
+    private int parseDigit(int value, byte digit) {
+	
+	int d = digit - '0';
+	if (value > ((Integer.MAX_VALUE - d) / 10)) {
+	    throw new java.lang.IllegalArgumentException("Value out of range in line " + _lineNumber);
+	}
+	return (value * 10) + d;
+    }
+
+    /**
+     * The record identifier of the current line.
+     *
+     * @return 
+     */
+    public String recordId() {
+	
+	return new String(_data, _idStart, _idEnd - _idStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The sequence in the current line.
+     *
+     * @return 
+     */
+    public IntegerSequence sequence() {
+	
+	int[][] intervals = new int[_intervals][];
+	for (int iInterval = 0; iInterval < _intervals; iInterval++) {
+	    intervals[iInterval] = new int[]{_bounds[iInterval * 2], _bounds[(iInterval * 2) + 1]};
+	}
+	return _factory.getTrustedSequence(intervals);
+    }
+}
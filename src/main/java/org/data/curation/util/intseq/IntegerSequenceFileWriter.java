@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming writer for files of integer sequences in the format that is read
+ * by the integer sequence file reader. Each sequence is written as a line
+ * that contains the record identifier and the interval string of the
+ * sequence separated by a tab character.
+ *
+ * Interval strings are encoded directly into a fixed byte buffer that is
+ * written to the channel whenever it is full. No string objects are created
+ * for the sequences.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceFileWriter implements Closeable {
+
+    /**
+     * Maximum number of bytes for an encoded interval (including the
+     * delimiter).
+     */
+    private static final int MAX_INTERVAL_BYTES = 23;
+
+    private final WritableByteChannel _channel;
+    private final byte[] _data;
+    private final byte[] _digits;
+    private int _pos;
+
+    /**
+     * Initialize the writer with the channel to write to and the size of
+     * the write buffer.
+     *
+     * @param channel 
+     * @param bufferSize 
+     */
+    public IntegerSequenceFileWriter(WritableByteChannel channel, int bufferSize) {
+	
+	_channel = channel;
+	
+	_data = new byte[Math.max(bufferSize, 64)];
+	_digits = new byte[10];
+	_pos = 0;
+    }
+
+    /**
+     * Initialize the writer with the default buffer size.
+     *
+     * @param channel 
+     */
+    public IntegerSequenceFileWriter(WritableByteChannel channel) {
+	
+	this(channel, IntegerSequenceFileReader.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Write all buffered bytes and close the channel.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+	
+	this.flush();
+	_channel.close();
+    }
+
+    /**
+     * Ensure that the buffer has space for the given number of bytes.
+     *
+     * @param bytes 
+     * @throws IOException
+     */
+    private void ensureCapacity(int bytes) throws IOException {
+	
+	if (_pos + bytes > _data.length) {
+	    this.flush();
+	}
+    }
+
+    /**
+     * Write all buffered bytes to the channel.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+	
+	ByteBuffer buffer = ByteBuffer.wrap(_data, 0, _pos);
+	while (buffer.hasRemaining()) {
+	    _channel.write(buffer);
+	}
+	_pos = 0;
+    }
+
+    /**
+     * Write a line for the given record and sequence. The record identifier
+     * must not contain tab or line break characters. The sequence must not
+     * contain negative values.
+     *
+     * @param recordId 
+     * @param sequence 
+     * @throws IOException
+     */
+    public void write(String recordId, IntegerSequence sequence) throws IOException {
+	
+	if ((!sequence.isEmpty()) && (sequence.intervalStart(0) < 0)) {
+	    throw new java.lang.IllegalArgumentException("Cannot write sequence with negative value " + sequence.intervalStart(0));
+	}
+	
+	byte[] id = recordId.getBytes(StandardCharsets.UTF_8);
+	for (byte b : id) {
+	    if ((b == '\t') || (b == '\n') || (b == '\r')) {
+		throw new java.lang.IllegalArgumentException("Invalid record identifier: " + recordId);
+	    }
+	}
+	this.ensureCapacity(id.length + 1);
+	if (id.length + 1 > _data.length) {
+	    ByteBuffer buffer = ByteBuffer.wrap(id);
+	    while (buffer.hasRemaining()) {
+		_channel.write(buffer);
+	    }
+	} else {
+	    System.arraycopy(id, 0, _data, _pos, id.length);
+	    _pos += id.length;
+	}
+	_data[_pos++] = '\t';
+	
+	for (int iInterval = 0; iInterval < sequence.intervals(); iInterval++) {
+	    this.ensureCapacity(MAX_INTERVAL_BYTES + 1);
+	    if (iInterval > 0) {
+		_data[_pos++] = ',';
+	    }
+	    int start = sequence.intervalStart(iInterval);
+	    int end = sequence.intervalEnd(iInterval);
+	    this.writeInt(start);
+	    if (start != end) {
+		_data[_pos++] = '-';
+		this.writeInt(end);
+	    }
+	}
+	this.ensureCapacity(1);
+	_data[_pos++] = '\n';
+    }
+
+    /**
+     * Write the decimal representation of a non-negative integer into the
+     * buffer.
+     *
+     * @param value 
+     */
+    private void writeInt(int value) {
+	
+	int count = 0;
+	int rest = value;
+	do {
+	    _digits[count++] = (byte)('0' + (rest % 10));
+	    rest /= 10;
+	} while (rest > 0);
+	while (count > 0) {
+	    _data[_pos++] = _digits[--count];
+	}
+    }
+}
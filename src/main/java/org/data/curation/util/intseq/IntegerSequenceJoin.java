@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Joins between two collections of integer sequences.
+ *
+ * The overlap join uses a plane sweep over the intervals of all sequences.
+ * Intervals are sorted by their start. For each side of the join the sweep
+ * maintains the set of active intervals, i.e., intervals that started before
+ * the current sweep position. When an interval starts, it is compared
+ * against the active intervals of the other side. Intervals that ended before
+ * the current position are removed from the active set during this
+ * comparison. Each comparison with an interval that is still active reports
+ * an overlapping interval pair. The total cost is O((n + m) log(n + m) + k)
+ * where n and m are the number of intervals on both sides and k is the number
+ * of overlapping interval pairs.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public final class IntegerSequenceJoin {
+
+    private IntegerSequenceJoin() {
+    }
+
+    /**
+     * Collect the intervals of all sequences in the given list. Stores the
+     * end of each interval and the index of the sequence it belongs to. Adds
+     * a start event for each interval to the given event array. Returns the
+     * number of events in the array.
+     *
+     * @param sequences 
+     * @param side 
+     * @param ends 
+     * @param owners 
+     * @param events 
+     * @param eventCount 
+     * @return 
+     */
+    private static int collect(List<? extends IntegerSequence> sequences, int side, int[] ends, int[] owners, long[] events, int eventCount) {
+	
+	int count = eventCount;
+	int index = 0;
+	for (int iSeq = 0; iSeq < sequences.size(); iSeq++) {
+	    IntegerSequence sequence = sequences.get(iSeq);
+	    for (int iInterval = 0; iInterval < sequence.intervals(); iInterval++) {
+		ends[index] = sequence.intervalEnd(iInterval);
+		owners[index] = iSeq;
+		int id = (index << 1) | side;
+		events[count++] = (((long)sequence.intervalStart(iInterval)) << 32) | (id & 0xFFFFFFFFL);
+		index++;
+	    }
+	}
+	return count;
+    }
+
+    /**
+     * Count the total number of intervals in a list of sequences.
+     *
+     * @param sequences 
+     * @return 
+     */
+    private static int countIntervals(List<? extends IntegerSequence> sequences) {
+	
+	long count = 0;
+	for (IntegerSequence sequence : sequences) {
+	    count += sequence.intervals();
+	}
+	if (count > (Integer.MAX_VALUE >> 1)) {
+	    throw new java.lang.IllegalArgumentException("Too many intervals for join: " + count);
+	}
+	return (int)count;
+    }
+
+    /**
+     * Sort pairs of keys and values by key. Uses a merge sort that is
+     * stable and runs in O(n log n).
+     *
+     * @param keys 
+     * @param values 
+     * @param size 
+     */
+    private static void sort(long[] keys, int[] values, int size) {
+	
+	long[] keyBuf = new long[size];
+	int[] valueBuf = new int[size];
+	
+	long[] srcKeys = keys;
+	int[] srcValues = values;
+	long[] dstKeys = keyBuf;
+	int[] dstValues = valueBuf;
+	for (int width = 1; width < size; width <<= 1) {
+	    for (int low = 0; low < size; low += (width << 1)) {
+		int mid = Math.min(low + width, size);
+		int high = Math.min(low + (width << 1), size);
+		int i = low;
+		int j = mid;
+		int k = low;
+		while ((i < mid) && (j < high)) {
+		    if (srcKeys[j] < srcKeys[i]) {
+			dstKeys[k] = srcKeys[j];
+			dstValues[k++] = srcValues[j++];
+		    } else {
+			dstKeys[k] = srcKeys[i];
+			dstValues[k++] = srcValues[i++];
+		    }
+		}
+		while (i < mid) {
+		    dstKeys[k] = srcKeys[i];
+		    dstValues[k++] = srcValues[i++];
+		}
+		while (j < high) {
+		    dstKeys[k] = srcKeys[j];
+		    dstValues[k++] = srcValues[j++];
+		}
+	    }
+	    long[] swapKeys = srcKeys;
+	    srcKeys = dstKeys;
+	    dstKeys = swapKeys;
+	    int[] swapValues = srcValues;
+	    srcValues = dstValues;
+	    dstValues = swapValues;
+	}
+	if (srcKeys != keys) {
+	    System.arraycopy(srcKeys, 0, keys, 0, size);
+	    System.arraycopy(srcValues, 0, values, 0, size);
+	}
+    }
+
+    /**
+     * Compute all pairs of sequences from the left and right list that
+     * overlap. The handler is called once for each overlapping pair together
+     * with the number of values that both sequences have in common. Pairs are
+     * reported in ascending order of the left index and then the right index.
+     *
+     * @param left 
+     * @param right 
+     * @param handler 
+     */
+    public static void overlapJoin(List<? extends IntegerSequence> left, List<? extends IntegerSequence> right, IntegerSequenceJoinHandler handler) {
+	
+	int sizeLeft = countIntervals(left);
+	int sizeRight = countIntervals(right);
+	if ((sizeLeft == 0) || (sizeRight == 0)) {
+	    return;
+	}
+	
+	int[][] ends = new int[][]{new int[sizeLeft], new int[sizeRight]};
+	int[][] owners = new int[][]{new int[sizeLeft], new int[sizeRight]};
+	long[] events = new long[sizeLeft + sizeRight];
+	int eventCount = collect(left, 0, ends[0], owners[0], events, 0);
+	collect(right, 1, ends[1], owners[1], events, eventCount);
+	Arrays.sort(events);
+	
+	int[][] active = new int[][]{new int[16], new int[16]};
+	int[] activeCount = new int[2];
+	
+	long[] pairs = new long[16];
+	int[] lengths = new int[16];
+	int pairCount = 0;
+	
+	for (long event : events) {
+	    int start = (int)(event >> 32);
+	    int id = (int)event;
+	    int side = id & 1;
+	    int index = id >>> 1;
+	    int end = ends[side][index];
+	    int other = 1 - side;
+	    int[] otherActive = active[other];
+	    int[] otherEnds = ends[other];
+	    int iActive = 0;
+	    while (iActive < activeCount[other]) {
+		int candidate = otherActive[iActive];
+		int candidateEnd = otherEnds[candidate];
+		if (candidateEnd < start) {
+		    otherActive[iActive] = otherActive[--activeCount[other]];
+		} else {
+		    if (pairCount == pairs.length) {
+			pairs = Arrays.copyOf(pairs, pairCount * 2);
+			lengths = Arrays.copyOf(lengths, pairCount * 2);
+		    }
+		    int leftSeq = (side == 0) ? owners[0][index] : owners[0][candidate];
+		    int rightSeq = (side == 0) ? owners[1][candidate] : owners[1][index];
+		    pairs[pairCount] = (((long)leftSeq) << 32) | (rightSeq & 0xFFFFFFFFL);
+		    lengths[pairCount++] = (Math.min(end, candidateEnd) - start) + 1;
+		    iActive++;
+		}
+	    }
+	    if (activeCount[side] == active[side].length) {
+		active[side] = Arrays.copyOf(active[side], activeCount[side] * 2);
+	    }
+	    active[side][activeCount[side]++] = index;
+	}
+	
+	/*
+	 * A pair of sequences is reported for every pair of overlapping
+	 * intervals. Sort the reported pairs and aggregate the overlap length
+	 * for each pair of sequences.
+	 */
+	sort(pairs, lengths, pairCount);
+	int iPair = 0;
+	while (iPair < pairCount) {
+	    long key = pairs[iPair];
+	    int length = 0;
+	    while ((iPair < pairCount) && (pairs[iPair] == key)) {
+		length += lengths[iPair++];
+	    }
+	    handler.overlap((int)(key >>> 32), (int)key, length);
+	}
+    }
+}
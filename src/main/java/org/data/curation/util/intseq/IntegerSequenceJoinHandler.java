@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Receives the result pairs of a join between two collections of integer
+ * sequences.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public interface IntegerSequenceJoinHandler {
+
+    /**
+     * Called once for each pair of overlapping sequences. The sequences are
+     * identified by their index in the left and right collection. The length
+     * is the number of values that are contained in both sequences.
+     *
+     * @param left 
+     * @param right 
+     * @param length 
+     */
+    public void overlap(int left, int right, int length);
+}
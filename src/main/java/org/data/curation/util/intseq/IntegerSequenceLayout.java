@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Memory layouts for the intervals of an integer sequence. The layout is
+ * chosen when the sequence is created based on the number of intervals,
+ * their average length, and the span of the sequence.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public enum IntegerSequenceLayout {
+
+    /**
+     * Interval bounds stored as offsets from the first value in an array of
+     * 16-bit values. Used for sequences with a span of at most 65536 values.
+     */
+    COMPACT,
+    /**
+     * Sequence where all intervals contain a single value. Values are stored
+     * in an array of 16-bit values. Used by bounded factories with a universe
+     * of at most 65536 values.
+     */
+    COMPACT_SINGLETONS,
+    /**
+     * Interval bounds stored in a single integer array.
+     */
+    PACKED,
+    /**
+     * Sequence that consists of a single interval. Start and end are stored
+     * without an array.
+     */
+    RUN,
+    /**
+     * Sequence where all intervals contain a single value. Only one integer
+     * is stored per interval.
+     */
+    SINGLETONS,
+    /**
+     * Interval bounds stored in an array of 8-bit values. Used by bounded
+     * factories with a universe of at most 256 values.
+     */
+    TINY,
+    /**
+     * View on the intervals of another sequence, e.g., a part of a split or
+     * a complement. Only the view itself is stored. The intervals are read
+     * from the underlying sequence.
+     */
+    VIEW
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Monotone function that is used to remap the values of an integer sequence.
+ * Implementations are expected to be non-decreasing and to map consecutive
+ * values to either equal or consecutive values, e.g., the renumbering of
+ * versions after some versions have been removed.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public interface IntegerSequenceMapping {
+
+    /**
+     * Map the given value.
+     *
+     * @param value 
+     * @return 
+     */
+    public int apply(int value);
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache for the results of set operations on pairs of integer
+ * sequences. Results are keyed by the identity of both operands and the
+ * operation. Sequences are immutable, i.e., a cached result remains valid as
+ * long as the operands are the same objects.
+ *
+ * The cache is bounded by the estimated size of the cached results in bytes.
+ * The least recently used results are evicted first. Results that are larger
+ * than the cache are not cached. The operands are referenced weakly, i.e.,
+ * the cache does not keep operands alive. Results for operands that have
+ * been garbage collected are removed on the next access to the cache. A
+ * result that is one of its operands, e.g., a difference that removes no
+ * values, keeps that operand alive and is weighted by its size.
+ *
+ * The cache is thread-safe. Results are computed outside the lock. Two
+ * threads that miss on the same key at the same time may both compute the
+ * result. Every lookup acquires a single lock, because a lookup updates the
+ * access order and the statistics. Concurrent readers are therefore
+ * serialized on the lookup. Applications with many threads that perform
+ * frequent lookups should use a separate cache per thread or partition the
+ * operands across several caches.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceOperationCache {
+
+    /**
+     * Estimated number of bytes for the key, the weak references to both
+     * operands, and the map entry of a cached result.
+     */
+    private static final long ENTRY_SIZE_IN_BYTES = IntervalStore.align(IntervalStore.OBJECT_HEADER + (3L * IntervalStore.REFERENCE) + 12L) + (2L * IntervalStore.align(IntervalStore.OBJECT_HEADER + (5L * IntervalStore.REFERENCE))) + IntervalStore.align(IntervalStore.OBJECT_HEADER + (5L * IntervalStore.REFERENCE) + 4L);
+
+    private long _evictions;
+    private long _hits;
+    private final LinkedHashMap<Key, Object> _map;
+    private final long _maxWeight;
+    private long _misses;
+    private final ReferenceQueue<IntegerSequence> _queue;
+    private long _weight;
+
+    /**
+     * Initialize an empty cache with the maximum estimated size of all
+     * cached results in bytes.
+     *
+     * @param maxWeight 
+     */
+    public IntegerSequenceOperationCache(long maxWeight) {
+	
+	if (maxWeight < 0) {
+	    throw new java.lang.IllegalArgumentException("Invalid maximum weight: " + maxWeight);
+	}
+	
+	_maxWeight = maxWeight;
+	
+	_map = new LinkedHashMap<>(16, 0.75f, true);
+	_queue = new ReferenceQueue<>();
+	_evictions = 0;
+	_hits = 0;
+	_misses = 0;
+	_weight = 0;
+    }
+
+    /**
+     * Remove all cached results. Statistics are not reset.
+     */
+    public synchronized void clear() {
+	
+	_map.clear();
+	_weight = 0;
+    }
+
+    /**
+     * Returns the cached difference of the two sequences.
+     *
+     * @param left 
+     * @param right 
+     * @return 
+     */
+    public IntegerSequence difference(IntegerSequence left, IntegerSequence right) {
+	
+	Key key = new LookupKey(Operation.DIFFERENCE, left, right);
+	IntegerSequence result = (IntegerSequence)this.get(key);
+	if (result == null) {
+	    result = left.difference(right);
+	    this.put(key, result, result.estimatedSizeInBytes());
+	}
+	return result;
+    }
+
+    /**
+     * Number of results that have been evicted from the cache. Results that
+     * are removed because an operand was garbage collected are not counted.
+     *
+     * @return 
+     */
+    public synchronized long evictionCount() {
+	
+	return _evictions;
+    }
+
+    /**
+     * Remove the results for operands that have been garbage collected.
+     * Expects the caller to hold the lock.
+     */
+    private void expunge() {
+	
+	Operand operand;
+	while ((operand = (Operand)_queue.poll()) != null) {
+	    CachedKey key = operand._key;
+	    if (_map.remove(key) != null) {
+		_weight -= key._weight;
+	    }
+	}
+    }
+
+    /**
+     * Get the cached result for the given key. Updates the statistics.
+     *
+     * @param key 
+     * @return 
+     */
+    private synchronized Object get(Key key) {
+	
+	this.expunge();
+	Object result = _map.get(key);
+	if (result != null) {
+	    _hits++;
+	} else {
+	    _misses++;
+	}
+	return result;
+    }
+
+    /**
+     * Number of requests that were answered from the cache.
+     *
+     * @return 
+     */
+    public synchronized long hitCount() {
+	
+	return _hits;
+    }
+
+    /**
+     * Returns the cached intersection of the two sequences.
+     *
+     * @param left 
+     * @param right 
+     * @return 
+     */
+    public IntegerSequence intersect(IntegerSequence left, IntegerSequence right) {
+	
+	Key key = new LookupKey(Operation.INTERSECT, left, right);
+	IntegerSequence result = (IntegerSequence)this.get(key);
+	if (result == null) {
+	    result = left.intersect(right);
+	    this.put(key, result, result.estimatedSizeInBytes());
+	}
+	return result;
+    }
+
+    /**
+     * Maximum estimated size of all cached results in bytes.
+     *
+     * @return 
+     */
+    public long maxWeight() {
+	
+	return _maxWeight;
+    }
+
+    /**
+     * Number of requests that had to be computed.
+     *
+     * @return 
+     */
+    public synchronized long missCount() {
+	
+	return _misses;
+    }
+
+    /**
+     * Returns the cached result of the overlap test for the two sequences.
+     *
+     * @param left 
+     * @param right 
+     * @return 
+     */
+    public boolean overlap(IntegerSequence left, IntegerSequence right) {
+	
+	Key key = new LookupKey(Operation.OVERLAP, left, right);
+	Boolean result = (Boolean)this.get(key);
+	if (result == null) {
+	    result = left.overlap(right);
+	    this.put(key, result, 0);
+	}
+	return result;
+    }
+
+    /**
+     * Add a result to the cache and evict the least recently used results
+     * until the cache size is within the maximum weight.
+     *
+     * @param key 
+     * @param result 
+     * @param weight 
+     */
+    private synchronized void put(Key key, Object result, long weight) {
+	
+	this.expunge();
+	if ((weight + ENTRY_SIZE_IN_BYTES > _maxWeight) || (_map.containsKey(key))) {
+	    /* Too large or computed concurrently by another thread */
+	    return;
+	}
+	
+	CachedKey cachedKey = new CachedKey(key, weight + ENTRY_SIZE_IN_BYTES, _queue);
+	_map.put(cachedKey, result);
+	_weight += cachedKey._weight;
+	
+	Iterator<Map.Entry<Key, Object>> entries = _map.entrySet().iterator();
+	while (_weight > _maxWeight) {
+	    CachedKey eldest = (CachedKey)entries.next().getKey();
+	    entries.remove();
+	    _weight -= eldest._weight;
+	    _evictions++;
+	}
+    }
+
+    /**
+     * Number of cached results.
+     *
+     * @return 
+     */
+    public synchronized int size() {
+	
+	this.expunge();
+	return _map.size();
+    }
+
+    /**
+     * Returns the cached union of the two sequences.
+     *
+     * @param left 
+     * @param right 
+     * @return 
+     */
+    public IntegerSequence union(IntegerSequence left, IntegerSequence right) {
+	
+	Key key = new LookupKey(Operation.UNION, left, right);
+	IntegerSequence result = (IntegerSequence)this.get(key);
+	if (result == null) {
+	    result = left.union(right);
+	    this.put(key, result, result.estimatedSizeInBytes());
+	}
+	return result;
+    }
+
+    /**
+     * Estimated size of all cached results in bytes.
+     *
+     * @return 
+     */
+    public synchronized long weight() {
+	
+	this.expunge();
+	return _weight;
+    }
+
+    /**
+     * Cached set operations.
+     */
+    private enum Operation {
+	
+	DIFFERENCE,
+	INTERSECT,
+	OVERLAP,
+	UNION
+    }
+
+    /**
+     * Key of a cached result. Keys compare operands by identity. Keys of
+     * cached results whose operands have been garbage collected are only
+     * equal to themselves.
+     */
+    private static abstract class Key {
+	
+	private final int _hash;
+	private final Operation _operation;
+	
+	Key(Operation operation, IntegerSequence left, IntegerSequence right) {
+	
+	    _operation = operation;
+	    _hash = (((operation.ordinal() * 31) + System.identityHashCode(left)) * 31) + System.identityHashCode(right);
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+	
+	    if (this == obj) {
+		return true;
+	    } else if (!(obj instanceof Key)) {
+		return false;
+	    }
+	    Key key = (Key)obj;
+	    IntegerSequence left = this.left();
+	    IntegerSequence right = this.right();
+	    if ((left == null) || (right == null)) {
+		return false;
+	    }
+	    return ((_operation == key._operation) && (left == key.left()) && (right == key.right()));
+	}
+	
+	@Override
+	public int hashCode() {
+	
+	    return _hash;
+	}
+	
+	abstract IntegerSequence left();
+	
+	abstract IntegerSequence right();
+    }
+
+    /**
+     * Key of a cached result that references the operands weakly.
+     */
+    private static final class CachedKey extends Key {
+	
+	private final Operand _left;
+	private final Operand _right;
+	private final long _weight;
+	
+	CachedKey(Key key, long weight, ReferenceQueue<IntegerSequence> queue) {
+	
+	    super(key._operation, key.left(), key.right());
+	    _left = new Operand(key.left(), this, queue);
+	    _right = new Operand(key.right(), this, queue);
+	    _weight = weight;
+	}
+	
+	@Override
+	IntegerSequence left() {
+	
+	    return _left.get();
+	}
+	
+	@Override
+	IntegerSequence right() {
+	
+	    return _right.get();
+	}
+    }
+
+    /**
+     * Key that is used to look up a result. References the operands
+     * strongly.
+     */
+    private static final class LookupKey extends Key {
+	
+	private final IntegerSequence _left;
+	private final IntegerSequence _right;
+	
+	LookupKey(Operation operation, IntegerSequence left, IntegerSequence right) {
+	
+	    super(operation, left, right);
+	    _left = left;
+	    _right = right;
+	}
+	
+	@Override
+	IntegerSequence left() {
+	
+	    return _left;
+	}
+	
+	@Override
+	IntegerSequence right() {
+	
+	    return _right;
+	}
+    }
+
+    /**
+     * Weak reference to an operand of a cached result. Enqueued when the
+     * operand is garbage collected.
+     */
+    private static final class Operand extends WeakReference<IntegerSequence> {
+	
+	private final CachedKey _key;
+	
+	Operand(IntegerSequence operand, CachedKey key, ReferenceQueue<IntegerSequence> queue) {
+	
+	    super(operand, queue);
+	    _key = key;
+	}
+    }
+}
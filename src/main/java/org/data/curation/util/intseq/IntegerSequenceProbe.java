@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Stateful membership test for an integer sequence. The probe remembers the
+ * index of the interval that was found by the previous lookup (finger). A
+ * lookup for a value that is larger than or equal to the start of that
+ * interval searches forward from the finger using galloping search. The cost
+ * of a sequence of lookups in increasing order is therefore amortized
+ * constant per lookup. Lookups for smaller values restart the search from
+ * the first interval.
+ *
+ * A probe is not thread-safe. Each thread should use its own probe.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceProbe {
+
+    private int _finger;
+    private final IntegerSequence _sequence;
+
+    /**
+     * Initialize the probe for the given sequence.
+     *
+     * @param sequence 
+     */
+    public IntegerSequenceProbe(IntegerSequence sequence) {
+	
+	_sequence = sequence;
+	_finger = 0;
+    }
+
+    /**
+     * Returns true if the sequence contains the given value.
+     *
+     * @param value 
+     * @return 
+     */
+    public boolean contains(int value) {
+	
+	int size = _sequence.intervals();
+	
+	/*
+	 * The finger points to the first interval that ends at or after the
+	 * previous value. If the given value is before the start of that
+	 * interval it is either in the gap before the finger or the search
+	 * has to restart from the first interval.
+	 */
+	int from = _finger;
+	if ((from < size) && (value < _sequence.intervalStart(from))) {
+	    if ((from == 0) || (_sequence.intervalEnd(from - 1) < value)) {
+		return false;
+	    }
+	    from = 0;
+	} else if (from == size) {
+	    if ((size == 0) || (_sequence.intervalEnd(size - 1) < value)) {
+		return false;
+	    }
+	    from = 0;
+	}
+	
+	_finger = _sequence.gallop(value, from);
+	
+	return ((_finger < size) && (_sequence.intervalStart(_finger) <= value));
+    }
+
+    /**
+     * The sequence the probe operates on.
+     *
+     * @return 
+     */
+    public IntegerSequence sequence() {
+	
+	return _sequence;
+    }
+}
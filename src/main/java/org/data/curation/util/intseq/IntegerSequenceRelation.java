@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Relationship between two integer sequences A and B as returned by
+ * A.relate(B). The empty sequence is a subset of every non-empty sequence.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public enum IntegerSequenceRelation {
+
+    /**
+     * A and B are non-empty and have no value in common.
+     */
+    DISJOINT,
+    /**
+     * A and B contain the same values.
+     */
+    EQUAL,
+    /**
+     * A and B have values in common and each contains values that are not
+     * contained in the other.
+     */
+    OVERLAP,
+    /**
+     * All values in A are contained in B and B contains additional values.
+     */
+    SUBSET,
+    /**
+     * All values in B are contained in A and A contains additional values.
+     */
+    SUPERSET
+}
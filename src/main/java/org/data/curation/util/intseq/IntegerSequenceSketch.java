@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Fixed-size approximation of an integer sequence that is maintained under
+ * append. The sketch never holds more than a given number of intervals. If
+ * an appended value would exceed this number the two intervals that are
+ * separated by the smallest gap are merged. The sketch is a superset of the
+ * sequence of appended values. The error is the number of values that were
+ * added by merging intervals.
+ *
+ * Merging an interval pair does not change the size of any other gap. The
+ * sketch therefore always keeps the largest gaps among all gaps seen so far
+ * and the error is the same as for coarsening the full sequence.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceSketch {
+
+    private final int[] _bounds;
+    private long _error;
+    private final IntegerSequenceFactory _factory;
+    private int _size;
+
+    /**
+     * Initialize an empty sketch with the given maximum number of intervals.
+     *
+     * @param factory 
+     * @param maxIntervals 
+     */
+    public IntegerSequenceSketch(IntegerSequenceFactory factory, int maxIntervals) {
+	
+	if (maxIntervals < 1) {
+	    throw new java.lang.IllegalArgumentException("Invalid number of intervals: " + maxIntervals);
+	}
+	
+	_factory = factory;
+	_bounds = new int[(maxIntervals + 1) * 2];
+	_error = 0;
+	_size = 0;
+    }
+
+    /**
+     * Initialize the sketch with the values of the given sequence.
+     *
+     * @param sequence 
+     * @param maxIntervals 
+     */
+    public IntegerSequenceSketch(IntegerSequence sequence, int maxIntervals) {
+	
+	this(sequence.factory(), maxIntervals);
+	
+	for (int iInterval = 0; iInterval < sequence.intervals(); iInterval++) {
+	    this.appendInterval(sequence.intervalStart(iInterval), sequence.intervalEnd(iInterval));
+	}
+    }
+
+    /**
+     * Append a value to the sketch. The value has to be larger than the last
+     * value in the sketch.
+     *
+     * @param value 
+     */
+    public void append(int value) {
+	
+	this.appendInterval(value, value);
+    }
+
+    /**
+     * Append an interval. Extends the last interval if the new interval is
+     * adjacent to it. Otherwise, the interval is added and the smallest gap
+     * is removed if the maximum number of intervals is exceeded.
+     *
+     * @param start 
+     * @param end 
+     */
+    private void appendInterval(int start, int end) {
+	
+	if (_size > 0) {
+	    int lastValue = _bounds[(_size * 2) - 1];
+	    if (lastValue >= start) {
+		throw new java.lang.IllegalArgumentException("Attempt to append value " + start + " to sketch that ends at value " + lastValue);
+	    } else if (start == (lastValue + 1)) {
+		_bounds[(_size * 2) - 1] = end;
+		return;
+	    }
+	}
+	
+	_bounds[_size * 2] = start;
+	_bounds[(_size * 2) + 1] = end;
+	_size++;
+	
+	if ((_size * 2) == _bounds.length) {
+	    int minGap = 0;
+	    long minGapSize = Long.MAX_VALUE;
+	    for (int iGap = 0; iGap < _size - 1; iGap++) {
+		long gapSize = ((long)_bounds[(iGap * 2) + 2] - (long)_bounds[(iGap * 2) + 1]) - 1L;
+		if (gapSize < minGapSize) {
+		    minGap = iGap;
+		    minGapSize = gapSize;
+		}
+	    }
+	    _error += minGapSize;
+	    /*
+	     * Remove the end of the first and the start of the second
+	     * interval of the merged pair.
+	     */
+	    int pos = (minGap * 2) + 1;
+	    System.arraycopy(_bounds, pos + 2, _bounds, pos, ((_size * 2) - pos) - 2);
+	    _size--;
+	}
+    }
+
+    /**
+     * The number of values in the sketch that are not in the sequence of
+     * appended values.
+     *
+     * @return 
+     */
+    public long error() {
+	
+	return _error;
+    }
+
+    /**
+     * The number of intervals in the sketch.
+     *
+     * @return 
+     */
+    public int intervals() {
+	
+	return _size;
+    }
+
+    /**
+     * The maximum number of intervals in the sketch.
+     *
+     * @return 
+     */
+    public int maxIntervals() {
+	
+	return (_bounds.length / 2) - 1;
+    }
+
+    /**
+     * Get the sketch as an integer sequence.
+     *
+     * @return 
+     */
+    public IntegerSequence toSequence() {
+	
+	int[][] intervals = new int[_size][];
+	for (int iInterval = 0; iInterval < _size; iInterval++) {
+	    intervals[iInterval] = new int[]{_bounds[iInterval * 2], _bounds[(iInterval * 2) + 1]};
+	}
+	return _factory.getSequence(intervals);
+    }
+}
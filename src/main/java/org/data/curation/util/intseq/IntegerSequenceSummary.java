@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Constant-size summary of an integer sequence. The summary contains the
+ * first and last value of the sequence and a coarse occupancy mask. The span
+ * of the sequence is divided into at most 64 buckets of width 2^shift that
+ * are aligned at multiples of the bucket width. A bit in the mask is set if
+ * the sequence contains at least one value in the respective bucket.
+ *
+ * Summaries are used to reject set operations on sequences that cannot
+ * overlap or contain each other without looking at their intervals. A
+ * negative answer from a summary is always correct. A positive answer only
+ * means that the sequences have to be examined.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public final class IntegerSequenceSummary {
+
+    private static final int BUCKETS = 64;
+
+    private final long _base;
+    private final boolean _empty;
+    private final int _first;
+    private final int _last;
+    private final long _mask;
+    private final int _shift;
+
+    /**
+     * Compute the summary for the given sequence.
+     *
+     * @param sequence 
+     */
+    IntegerSequenceSummary(IntegerSequence sequence) {
+	
+	if (sequence.isEmpty()) {
+	    _empty = true;
+	    _first = 0;
+	    _last = 0;
+	    _shift = 0;
+	    _base = 0;
+	    _mask = 0;
+	    return;
+	}
+	
+	_empty = false;
+	_first = sequence.intervalStart(0);
+	_last = sequence.intervalEnd(sequence.intervals() - 1);
+	
+	int shift = 0;
+	while (((long)(_last >> shift) - (long)(_first >> shift)) >= BUCKETS) {
+	    shift++;
+	}
+	_shift = shift;
+	_base = _first >> shift;
+	
+	long mask = 0;
+	for (int iInterval = 0; iInterval < sequence.intervals(); iInterval++) {
+	    int low = (int)((sequence.intervalStart(iInterval) >> shift) - _base);
+	    int high = (int)((sequence.intervalEnd(iInterval) >> shift) - _base);
+	    mask |= (-1L >>> ((BUCKETS - 1) - (high - low))) << low;
+	}
+	_mask = mask;
+    }
+
+    /**
+     * Returns the occupancy mask for buckets of width 2^shift relative to
+     * the given bucket base. The shift is expected to be at least as large
+     * as the shift of this summary. Buckets outside the range of the mask
+     * are dropped.
+     *
+     * @param shift 
+     * @param base 
+     * @return 
+     */
+    private long align(int shift, long base) {
+	
+	if (shift == _shift) {
+	    long offset = _base - base;
+	    if ((offset >= BUCKETS) || (offset <= -BUCKETS)) {
+		return 0;
+	    } else if (offset >= 0) {
+		return _mask << offset;
+	    } else {
+		return _mask >>> -offset;
+	    }
+	}
+	
+	int diff = shift - _shift;
+	long mask = 0;
+	long bits = _mask;
+	while (bits != 0) {
+	    int bit = Long.numberOfTrailingZeros(bits);
+	    long bucket = ((_base + bit) >> diff) - base;
+	    if ((bucket >= 0) && (bucket < BUCKETS)) {
+		mask |= 1L << bucket;
+	    }
+	    bits &= bits - 1;
+	}
+	return mask;
+    }
+
+    /**
+     * The first value of the summarized sequence. The value is undefined
+     * for empty sequences.
+     *
+     * @return 
+     */
+    public int first() {
+	
+	return _first;
+    }
+
+    /**
+     * Returns true if the summarized sequence is empty.
+     *
+     * @return 
+     */
+    public boolean isEmpty() {
+	
+	return _empty;
+    }
+
+    /**
+     * The last value of the summarized sequence. The value is undefined
+     * for empty sequences.
+     *
+     * @return 
+     */
+    public int last() {
+	
+	return _last;
+    }
+
+    /**
+     * The occupancy mask. Bit i represents the values in the i-th bucket of
+     * width 2^shift starting at the bucket that contains the first value.
+     *
+     * @return 
+     */
+    public long mask() {
+	
+	return _mask;
+    }
+
+    /**
+     * Returns false if the summarized sequence definitely does not contain
+     * the given value.
+     *
+     * @param value 
+     * @return 
+     */
+    public boolean mayContain(int value) {
+	
+	if ((_empty) || (value < _first) || (value > _last)) {
+	    return false;
+	}
+	return ((_mask & (1L << ((value >> _shift) - _base))) != 0);
+    }
+
+    /**
+     * Returns false if the sequence summarized by this summary definitely
+     * does not contain all values of the sequence summarized by the given
+     * summary.
+     *
+     * @param summary 
+     * @return 
+     */
+    public boolean mayContain(IntegerSequenceSummary summary) {
+	
+	if (summary._empty) {
+	    return true;
+	} else if ((_empty) || (summary._first < _first) || (summary._last > _last)) {
+	    return false;
+	}
+	
+	int shift = Math.max(_shift, summary._shift);
+	long base = _first >> shift;
+	long maskI = this.align(shift, base);
+	long maskJ = summary.align(shift, base);
+	return ((maskJ & ~maskI) == 0);
+    }
+
+    /**
+     * Returns false if the two summarized sequences definitely do not have
+     * any value in common.
+     *
+     * @param summary 
+     * @return 
+     */
+    public boolean mayOverlap(IntegerSequenceSummary summary) {
+	
+	if ((_empty) || (summary._empty)) {
+	    return false;
+	} else if ((_last < summary._first) || (summary._last < _first)) {
+	    return false;
+	}
+	
+	int shift = Math.max(_shift, summary._shift);
+	long base = Math.max(_first, summary._first) >> shift;
+	return ((this.align(shift, base) & summary.align(shift, base)) != 0);
+    }
+
+    /**
+     * The logarithm of the bucket width.
+     *
+     * @return 
+     */
+    public int shift() {
+	
+	return _shift;
+    }
+
+    /**
+     * Estimated number of bytes that are occupied by the summary.
+     *
+     * @return 
+     */
+    long sizeInBytes() {
+	
+	return IntervalStore.align(IntervalStore.OBJECT_HEADER + 29);
+    }
+}
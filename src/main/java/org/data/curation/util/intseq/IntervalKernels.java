@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Batch kernels over packed arrays of interval bounds. In a packed array the
+ * start of interval k is stored at position 2k and the end at position 2k + 1.
+ * All kernels operate on the intervals with index from (inclusive) to to
+ * (exclusive).
+ *
+ * The kernels are written as flat loops over primitive arrays without
+ * branches that depend on the data where possible. This allows the JIT
+ * compiler to unroll the loops and to use conditional moves instead of
+ * mispredicted jumps.
+ *
+ * Counting over long ranges uses the Vector API kernel in
+ * VectorIntervalKernels if it is available. That class is only built with
+ * the optional vector profile and requires the jdk.incubator.vector module
+ * at runtime. Otherwise, or if the system property intseq.scalarKernels is
+ * set to true, the scalar loops are used.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+final class IntervalKernels {
+
+    /**
+     * Rows with up to this number of intervals are probed by a linear scan
+     * instead of a binary search.
+     */
+    private static final int LINEAR_SCAN_THRESHOLD = 8;
+
+    /**
+     * Ranges with at least this number of intervals are counted by the
+     * vector kernel if it is available.
+     */
+    private static final int VECTOR_THRESHOLD = 64;
+
+    /**
+     * Vector kernel, or null if the scalar loops are used.
+     */
+    private static final CountKernel VECTOR_KERNEL = loadVectorKernel();
+
+    private IntervalKernels() {
+    }
+
+    /**
+     * Returns true if one of the intervals in the given range contains the
+     * given value.
+     *
+     * @param bounds 
+     * @param from 
+     * @param to 
+     * @param value 
+     * @return 
+     */
+    static boolean contains(int[] bounds, int from, int to, int value) {
+	
+	if ((to - from) <= LINEAR_SCAN_THRESHOLD) {
+	    return (countContaining(bounds, from, to, value) != 0);
+	} else {
+	    return (search(bounds, from, to, value) >= 0);
+	}
+    }
+
+    /**
+     * Count the number of intervals in the given range that contain the given
+     * value. Intervals of a single sequence are disjoint. When applied to all
+     * intervals in a column the result is therefore the number of rows that
+     * contain the value.
+     *
+     * @param bounds 
+     * @param from 
+     * @param to 
+     * @param value 
+     * @return 
+     */
+    static int countContaining(int[] bounds, int from, int to, int value) {
+	
+	if ((VECTOR_KERNEL != null) && ((to - from) >= VECTOR_THRESHOLD)) {
+	    return VECTOR_KERNEL.countContaining(bounds, from, to, value);
+	}
+	
+	int count = 0;
+	
+	for (int pos = from * 2; pos < to * 2; pos += 2) {
+	    count += ((bounds[pos] <= value) & (bounds[pos + 1] >= value)) ? 1 : 0;
+	}
+	
+	return count;
+    }
+
+    /**
+     * Load the vector kernel. Returns null if the kernel class is not on the
+     * class path, cannot be loaded by this JVM, or is disabled.
+     *
+     * @return 
+     */
+    private static CountKernel loadVectorKernel() {
+	
+	if (Boolean.getBoolean("intseq.scalarKernels")) {
+	    return null;
+	}
+	try {
+	    return (CountKernel)Class.forName("org.data.curation.util.intseq.VectorIntervalKernels").newInstance();
+	} catch (java.lang.ReflectiveOperationException | java.lang.LinkageError ex) {
+	    return null;
+	}
+    }
+
+    /**
+     * Returns true if the intervals in the first range overlap with the
+     * intervals in the second range.
+     *
+     * @param boundsI 
+     * @param fromI 
+     * @param toI 
+     * @param boundsJ 
+     * @param fromJ 
+     * @param toJ 
+     * @return 
+     */
+    static boolean overlap(int[] boundsI, int fromI, int toI, int[] boundsJ, int fromJ, int toJ) {
+	
+	if ((fromI >= toI) || (fromJ >= toJ)) {
+	    return false;
+	} else if ((boundsI[toI * 2 - 1] < boundsJ[fromJ * 2]) || (boundsJ[toJ * 2 - 1] < boundsI[fromI * 2])) {
+	    return false;
+	}
+	
+	int idxI = fromI;
+	int idxJ = fromJ;
+	while ((idxI < toI) && (idxJ < toJ)) {
+	    if (boundsI[idxI * 2 + 1] < boundsJ[idxJ * 2]) {
+		idxI++;
+	    } else if (boundsI[idxI * 2] > boundsJ[idxJ * 2 + 1]) {
+		idxJ++;
+	    } else {
+		return true;
+	    }
+	}
+	
+	return false;
+    }
+
+    /**
+     * Copy the interval bounds of the given sequence into a packed array.
+     *
+     * @param sequence 
+     * @return 
+     */
+    static int[] pack(IntegerSequence sequence) {
+	
+	int[] bounds = new int[sequence.intervals() * 2];
+	
+	for (int iInterval = 0; iInterval < sequence.intervals(); iInterval++) {
+	    bounds[iInterval * 2] = sequence.intervalStart(iInterval);
+	    bounds[iInterval * 2 + 1] = sequence.intervalEnd(iInterval);
+	}
+	
+	return bounds;
+    }
+
+    /**
+     * Binary search for the interval in the given range that contains the
+     * given value. Returns -1 if no such interval exists.
+     *
+     * @param bounds 
+     * @param from 
+     * @param to 
+     * @param value 
+     * @return 
+     */
+    static int search(int[] bounds, int from, int to, int value) {
+	
+	int low = from;
+	int high = to - 1;
+	while (low <= high) {
+	    int mid = (low + high) >>> 1;
+	    if (bounds[mid * 2 + 1] < value) {
+		low = mid + 1;
+	    } else if (bounds[mid * 2] > value) {
+		high = mid - 1;
+	    } else {
+		return mid;
+	    }
+	}
+	
+	return -1;
+    }
+
+    /**
+     * Sum of the number of integer values in all intervals in the given
+     * range. The sum is computed as the difference between the sum of interval
+     * ends and the sum of interval starts plus the number of intervals.
+     *
+     * @param bounds 
+     * @param from 
+     * @param to 
+     * @return 
+     */
+    static long sumLengths(int[] bounds, int from, int to) {
+	
+	long starts = 0;
+	long ends = 0;
+	
+	for (int pos = from * 2; pos < to * 2; pos += 2) {
+	    starts += bounds[pos];
+	    ends += bounds[pos + 1];
+	}
+	
+	return (ends - starts) + (to - from);
+    }
+
+    /**
+     * Kernel that counts the intervals in a range that contain a value.
+     */
+    interface CountKernel {
+	
+	int countContaining(int[] bounds, int from, int to, int value);
+    }
+}
@@ -0,0 +1,664 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.util.intseq;
+
+/**
+ * Storage for the intervals of an integer sequence. Each implementation
+ * represents a different memory layout. All layouts provide constant time
+ * access to the start and end of each interval.
+ *
+ * Stores are immutable. The layout for a given array of intervals is chosen
+ * by encode() based on the number of intervals, the average interval length,
+ * and the span between the first and the last value.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+abstract class IntervalStore {
+
+    /**
+     * Size of an array header in bytes. Assumes compressed references on
+     * 64-bit JVMs (the default for heaps below 32 GB).
+     */
+    static final int ARRAY_HEADER;
+    /**
+     * Size of an object header in bytes. Assumes compressed references on
+     * 64-bit JVMs.
+     */
+    static final int OBJECT_HEADER;
+    /**
+     * Size of an object reference in bytes.
+     */
+    static final int REFERENCE;
+
+    static {
+	
+	if ("32".equals(System.getProperty("sun.arch.data.model"))) {
+	    ARRAY_HEADER = 12;
+	    OBJECT_HEADER = 8;
+	} else {
+	    ARRAY_HEADER = 16;
+	    OBJECT_HEADER = 12;
+	}
+	REFERENCE = 4;
+    }
+
+    private static final IntervalStore EMPTY = new PackedStore(new int[0]);
+
+    /**
+     * Round the given number of bytes up to the next multiple of eight.
+     *
+     * @param bytes 
+     * @return 
+     */
+    static long align(long bytes) {
+	
+	return (bytes + 7L) & ~7L;
+    }
+
+    /**
+     * Create a store for the given array of intervals. Expects the intervals
+     * to be sorted and neither adjacent nor overlapping. The array is not
+     * modified and not referenced by the returned store.
+     *
+     * @param intervals 
+     * @return 
+     */
+    static IntervalStore encode(int[][] intervals) {
+	
+	int size = intervals.length;
+	if (size == 0) {
+	    return EMPTY;
+	} else if (size == 1) {
+	    return new RunStore(intervals[0][0], intervals[0][1]);
+	}
+	
+	long length = 0;
+	for (int[] interval : intervals) {
+	    length += ((long)interval[1] - (long)interval[0]) + 1L;
+	}
+	int first = intervals[0][0];
+	long span = ((long)intervals[size - 1][1] - (long)first) + 1L;
+	
+	if (length == size) {
+	    int[] values = new int[size];
+	    for (int iInterval = 0; iInterval < size; iInterval++) {
+		values[iInterval] = intervals[iInterval][0];
+	    }
+	    return new SingletonStore(values);
+	} else if (span <= (Character.MAX_VALUE + 1)) {
+	    char[] offsets = new char[size * 2];
+	    for (int iInterval = 0; iInterval < size; iInterval++) {
+		offsets[iInterval * 2] = (char)(intervals[iInterval][0] - first);
+		offsets[(iInterval * 2) + 1] = (char)(intervals[iInterval][1] - first);
+	    }
+	    return new CompactStore(first, offsets);
+	} else {
+	    int[] bounds = new int[size * 2];
+	    for (int iInterval = 0; iInterval < size; iInterval++) {
+		bounds[iInterval * 2] = intervals[iInterval][0];
+		bounds[(iInterval * 2) + 1] = intervals[iInterval][1];
+	    }
+	    return new PackedStore(bounds);
+	}
+    }
+
+    /**
+     * Create a view on the gaps of this store within the universe
+     * [0-universeEnd]. Expects all values in the store to be non-negative.
+     * The view does not copy any intervals and provides constant time access
+     * to each gap.
+     *
+     * @param universeEnd 
+     * @return 
+     */
+    IntervalStore complement(int universeEnd) {
+	
+	/* Number of intervals that start within the universe */
+	int low = 0;
+	int high = this.size();
+	while (low < high) {
+	    int mid = (low + high) >>> 1;
+	    if (this.start(mid) <= universeEnd) {
+		low = mid + 1;
+	    } else {
+		high = mid;
+	    }
+	}
+	int count = low;
+	
+	if (count == 0) {
+	    return new RunStore(0, universeEnd);
+	}
+	boolean leading = (this.start(0) > 0);
+	boolean trailing = (this.end(count - 1) < universeEnd);
+	int size = (count - 1) + (leading ? 1 : 0) + (trailing ? 1 : 0);
+	if (size == 0) {
+	    return EMPTY;
+	}
+	return new ComplementStore(this, leading ? 1 : 0, count, size, universeEnd);
+    }
+
+    /**
+     * Create a store for the given array of intervals with values in the
+     * range [0-universeMax]. Uses 8-bit values if the universe contains at
+     * most 256 values and 16-bit values if the universe contains at most
+     * 65536 values. Uses encode() for larger universes. Expects the intervals
+     * to be sorted and neither adjacent nor overlapping.
+     *
+     * @param intervals 
+     * @param universeMax 
+     * @return 
+     */
+    static IntervalStore encodeNarrow(int[][] intervals, int universeMax) {
+	
+	int size = intervals.length;
+	if ((size < 2) || (universeMax > Character.MAX_VALUE)) {
+	    return encode(intervals);
+	}
+	
+	if (universeMax <= 0xFF) {
+	    byte[] bounds = new byte[size * 2];
+	    for (int iInterval = 0; iInterval < size; iInterval++) {
+		bounds[iInterval * 2] = (byte)intervals[iInterval][0];
+		bounds[(iInterval * 2) + 1] = (byte)intervals[iInterval][1];
+	    }
+	    return new TinyStore(bounds);
+	}
+	
+	boolean singletons = true;
+	for (int[] interval : intervals) {
+	    if (interval[0] != interval[1]) {
+		singletons = false;
+		break;
+	    }
+	}
+	if (singletons) {
+	    char[] values = new char[size];
+	    for (int iInterval = 0; iInterval < size; iInterval++) {
+		values[iInterval] = (char)intervals[iInterval][0];
+	    }
+	    return new CompactSingletonStore(values);
+	} else {
+	    char[] bounds = new char[size * 2];
+	    for (int iInterval = 0; iInterval < size; iInterval++) {
+		bounds[iInterval * 2] = (char)intervals[iInterval][0];
+		bounds[(iInterval * 2) + 1] = (char)intervals[iInterval][1];
+	    }
+	    return new CompactStore(0, bounds);
+	}
+    }
+
+    /**
+     * End of the interval at the given index.
+     *
+     * @param index 
+     * @return 
+     */
+    abstract int end(int index);
+
+    /**
+     * Get the interval at the given index as a new array of length two.
+     *
+     * @param index 
+     * @return 
+     */
+    int[] interval(int index) {
+	
+	return new int[]{this.start(index), this.end(index)};
+    }
+
+    /**
+     * The memory layout of the store.
+     *
+     * @return 
+     */
+    abstract IntegerSequenceLayout layout();
+
+    /**
+     * Number of intervals in the store.
+     *
+     * @return 
+     */
+    abstract int size();
+
+    /**
+     * Estimated number of bytes that are occupied by the store.
+     *
+     * @return 
+     */
+    abstract long sizeInBytes();
+
+    /**
+     * Create a view on a range of intervals of this store. The start of the
+     * first and the end of the last interval in the range are replaced by
+     * the given values. The view does not copy any intervals.
+     *
+     * @param offset 
+     * @param size 
+     * @param firstStart 
+     * @param lastEnd 
+     * @return 
+     */
+    IntervalStore slice(int offset, int size, int firstStart, int lastEnd) {
+	
+	if (size == 0) {
+	    return EMPTY;
+	}
+	return new SliceStore(this, offset, size, firstStart, lastEnd);
+    }
+
+    /**
+     * Start of the interval at the given index.
+     *
+     * @param index 
+     * @return 
+     */
+    abstract int start(int index);
+
+    /**
+     * Intervals that contain a single 16-bit value each.
+     */
+    private static final class CompactSingletonStore extends IntervalStore {
+	
+	private final char[] _values;
+	
+	CompactSingletonStore(char[] values) {
+	
+	    _values = values;
+	}
+	
+	@Override
+	int end(int index) {
+	
+	    return _values[index];
+	}
+	
+	@Override
+	IntegerSequenceLayout layout() {
+	
+	    return IntegerSequenceLayout.COMPACT_SINGLETONS;
+	}
+	
+	@Override
+	int size() {
+	
+	    return _values.length;
+	}
+	
+	@Override
+	long sizeInBytes() {
+	
+	    return align(OBJECT_HEADER + REFERENCE) + align(ARRAY_HEADER + (2L * _values.length));
+	}
+	
+	@Override
+	int start(int index) {
+	
+	    return _values[index];
+	}
+    }
+
+    /**
+     * Interval bounds as 16-bit offsets from the first value.
+     */
+    private static final class CompactStore extends IntervalStore {
+	
+	private final int _base;
+	private final char[] _offsets;
+	
+	CompactStore(int base, char[] offsets) {
+	
+	    _base = base;
+	    _offsets = offsets;
+	}
+	
+	@Override
+	int end(int index) {
+	
+	    return _base + _offsets[(index * 2) + 1];
+	}
+	
+	@Override
+	IntegerSequenceLayout layout() {
+	
+	    return IntegerSequenceLayout.COMPACT;
+	}
+	
+	@Override
+	int size() {
+	
+	    return _offsets.length / 2;
+	}
+	
+	@Override
+	long sizeInBytes() {
+	
+	    return align(OBJECT_HEADER + 4 + REFERENCE) + align(ARRAY_HEADER + (2L * _offsets.length));
+	}
+	
+	@Override
+	int start(int index) {
+	
+	    return _base + _offsets[index * 2];
+	}
+    }
+
+    /**
+     * View on the gaps between the intervals of another store. The gap at
+     * index i follows the parent interval at index i - lead.
+     */
+    private static final class ComplementStore extends IntervalStore {
+	
+	private final int _count;
+	private final int _lead;
+	private final IntervalStore _parent;
+	private final int _size;
+	private final int _universeEnd;
+	
+	ComplementStore(IntervalStore parent, int lead, int count, int size, int universeEnd) {
+	
+	    _parent = parent;
+	    _lead = lead;
+	    _count = count;
+	    _size = size;
+	    _universeEnd = universeEnd;
+	}
+	
+	@Override
+	int end(int index) {
+	
+	    int next = (index - _lead) + 1;
+	    if (next < _count) {
+		return _parent.start(next) - 1;
+	    }
+	    return _universeEnd;
+	}
+	
+	@Override
+	IntegerSequenceLayout layout() {
+	
+	    return IntegerSequenceLayout.VIEW;
+	}
+	
+	@Override
+	int size() {
+	
+	    return _size;
+	}
+	
+	@Override
+	long sizeInBytes() {
+	
+	    return align(OBJECT_HEADER + 16 + REFERENCE);
+	}
+	
+	@Override
+	int start(int index) {
+	
+	    int prev = index - _lead;
+	    if (prev < 0) {
+		return 0;
+	    }
+	    return _parent.end(prev) + 1;
+	}
+    }
+
+    /**
+     * Interval bounds in a single integer array.
+     */
+    private static final class PackedStore extends IntervalStore {
+	
+	private final int[] _bounds;
+	
+	PackedStore(int[] bounds) {
+	
+	    _bounds = bounds;
+	}
+	
+	@Override
+	int end(int index) {
+	
+	    return _bounds[(index * 2) + 1];
+	}
+	
+	@Override
+	IntegerSequenceLayout layout() {
+	
+	    return IntegerSequenceLayout.PACKED;
+	}
+	
+	@Override
+	int size() {
+	
+	    return _bounds.length / 2;
+	}
+	
+	@Override
+	long sizeInBytes() {
+	
+	    return align(OBJECT_HEADER + REFERENCE) + align(ARRAY_HEADER + (4L * _bounds.length));
+	}
+	
+	@Override
+	int start(int index) {
+	
+	    return _bounds[index * 2];
+	}
+    }
+
+    /**
+     * A single interval.
+     */
+    private static final class RunStore extends IntervalStore {
+	
+	private final int _end;
+	private final int _start;
+	
+	RunStore(int start, int end) {
+	
+	    _start = start;
+	    _end = end;
+	}
+	
+	@Override
+	int end(int index) {
+	
+	    if (index != 0) {
+		throw new java.lang.IndexOutOfBoundsException("Index: " + index + ", Size: 1");
+	    }
+	    return _end;
+	}
+	
+	@Override
+	IntegerSequenceLayout layout() {
+	
+	    return IntegerSequenceLayout.RUN;
+	}
+	
+	@Override
+	int size() {
+	
+	    return 1;
+	}
+	
+	@Override
+	long sizeInBytes() {
+	
+	    return align(OBJECT_HEADER + 8);
+	}
+	
+	@Override
+	int start(int index) {
+	
+	    if (index != 0) {
+		throw new java.lang.IndexOutOfBoundsException("Index: " + index + ", Size: 1");
+	    }
+	    return _start;
+	}
+    }
+
+    /**
+     * View on a range of intervals of another store.
+     */
+    private static final class SliceStore extends IntervalStore {
+	
+	private final int _firstStart;
+	private final int _lastEnd;
+	private final int _offset;
+	private final IntervalStore _parent;
+	private final int _size;
+	
+	SliceStore(IntervalStore parent, int offset, int size, int firstStart, int lastEnd) {
+	
+	    _parent = parent;
+	    _offset = offset;
+	    _size = size;
+	    _firstStart = firstStart;
+	    _lastEnd = lastEnd;
+	}
+	
+	@Override
+	int end(int index) {
+	
+	    if (index == _size - 1) {
+		return _lastEnd;
+	    }
+	    return _parent.end(_offset + index);
+	}
+	
+	@Override
+	IntegerSequenceLayout layout() {
+	
+	    return IntegerSequenceLayout.VIEW;
+	}
+	
+	@Override
+	int size() {
+	
+	    return _size;
+	}
+	
+	@Override
+	long sizeInBytes() {
+	
+	    return align(OBJECT_HEADER + 16 + REFERENCE);
+	}
+	
+	@Override
+	IntervalStore slice(int offset, int size, int firstStart, int lastEnd) {
+	
+	    if (size == 0) {
+		return super.slice(offset, size, firstStart, lastEnd);
+	    }
+	    return new SliceStore(_parent, _offset + offset, size, firstStart, lastEnd);
+	}
+	
+	@Override
+	int start(int index) {
+	
+	    if (index == 0) {
+		return _firstStart;
+	    }
+	    return _parent.start(_offset + index);
+	}
+    }
+
+    /**
+     * Intervals that contain a single value each.
+     */
+    private static final class SingletonStore extends IntervalStore {
+	
+	private final int[] _values;
+	
+	SingletonStore(int[] values) {
+	
+	    _values = values;
+	}
+	
+	@Override
+	int end(int index) {
+	
+	    return _values[index];
+	}
+	
+	@Override
+	IntegerSequenceLayout layout() {
+	
+	    return IntegerSequenceLayout.SINGLETONS;
+	}
+	
+	@Override
+	int size() {
+	
+	    return _values.length;
+	}
+	
+	@Override
+	long sizeInBytes() {
+	
+	    return align(OBJECT_HEADER + REFERENCE) + align(ARRAY_HEADER + (4L * _values.length));
+	}
+	
+	@Override
+	int start(int index) {
+	
+	    return _values[index];
+	}
+    }
+
+    /**
+     * Interval bounds as 8-bit values.
+     */
+    private static final class TinyStore extends IntervalStore {
+	
+	private final byte[] _bounds;
+	
+	TinyStore(byte[] bounds) {
+	
+	    _bounds = bounds;
+	}
+	
+	@Override
+	int end(int index) {
+	
+	    return _bounds[(index * 2) + 1] & 0xFF;
+	}
+	
+	@Override
+	IntegerSequenceLayout layout() {
+	
+	    return IntegerSequenceLayout.TINY;
+	}
+	
+	@Override
+	int size() {
+	
+	    return _bounds.length / 2;
+	}
+	
+	@Override
+	long sizeInBytes() {
+	
+	    return align(OBJECT_HEADER + REFERENCE) + align(ARRAY_HEADER + _bounds.length);
+	}
+	
+	@Override
+	int start(int index) {
+	
+	    return _bounds[index * 2] & 0xFF;
+	}
+    }
+}
@@ -29,6 +29,60 @@ public class NonNegativeIntegerSequence extends IntegerSequence {
 	
 	super(new ArrayList<IntegerInterval>(intervals), new NonNegativeIntegerSequenceFactory());
     }
+
+    /**
+     * Initialize the sequence from a list of intervals that is validated.
+     * Used by the factory to create sequences that reference the factory
+     * instead of a new factory instance.
+     *
+     * @param factory 
+     * @param intervals 
+     */
+    NonNegativeIntegerSequence(NonNegativeIntegerSequenceFactory factory, List<NonNegativeIntegerInterval> intervals) {
+	
+	super(new ArrayList<IntegerInterval>(intervals), factory);
+    }
+
+    /**
+     * Initialize the sequence from an array of valid intervals. The intervals
+     * are not validated.
+     *
+     * @param factory 
+     * @param intervals 
+     */
+    NonNegativeIntegerSequence(NonNegativeIntegerSequenceFactory factory, int[][] intervals) {
+	
+	super(factory, intervals);
+    }
+    
+    /**
+     * Initialize the sequence from a valid interval store.
+     *
+     * @param factory 
+     * @param store 
+     */
+    NonNegativeIntegerSequence(NonNegativeIntegerSequenceFactory factory, IntervalStore store) {
+	
+	super(factory, store);
+    }
+    
+    /**
+     * Returns a view on the values in [0-universeEnd] that are not contained
+     * in this sequence. The view references the intervals of this sequence
+     * and does not copy them. Access to the start and end of each interval
+     * takes constant time. Thus, contains, intersect, overlap, and iteration
+     * have the same complexity as for this sequence.
+     *
+     * @param universeEnd 
+     * @return 
+     */
+    public NonNegativeIntegerSequence complement(int universeEnd) {
+	
+	if (universeEnd < 0) {
+	    throw new java.lang.IllegalArgumentException("Invalid universe end: " + universeEnd);
+	}
+	return new NonNegativeIntegerSequence((NonNegativeIntegerSequenceFactory)this.factory(), this.store().complement(universeEnd));
+    }
     
     /**
      * Returns a string representation of the time sequence in interval
@@ -39,7 +39,7 @@ public class NonNegativeIntegerSequenceFactory extends IntegerSequenceFactory {
 	for (int[] interval : intervals) {
 	    nonNegIntervals.add(new NonNegativeIntegerInterval(interval));
 	}
-	return new NonNegativeIntegerSequence(nonNegIntervals);
+	return new NonNegativeIntegerSequence(this, nonNegIntervals);
     }
 
     @Override
@@ -49,7 +49,32 @@ public class NonNegativeIntegerSequenceFactory extends IntegerSequenceFactory {
 	for (IntegerInterval interval : intervals) {
 	    nonNegIntervals.add(new NonNegativeIntegerInterval(new int[]{interval.start(), interval.end()}));
 	}
-	return new NonNegativeIntegerSequence(nonNegIntervals);
+	return new NonNegativeIntegerSequence(this, nonNegIntervals);
+    }
+
+    /**
+     * Only the first interval start needs to be checked for valid intervals.
+     * All other values are larger than the first value.
+     *
+     * @param intervals 
+     * @return 
+     */
+    @Override
+    NonNegativeIntegerSequence getTrustedSequence(int[][] intervals) {
+	
+	if ((intervals.length > 0) && (intervals[0][0] < 0)) {
+	    throw new java.lang.IllegalArgumentException("Illegal interval start at " + intervals[0][0]);
+	}
+	return new NonNegativeIntegerSequence(this, intervals);
+    }
+
+    @Override
+    NonNegativeIntegerSequence getTrustedSequence(IntervalStore store) {
+	
+	if ((store.size() > 0) && (store.start(0) < 0)) {
+	    throw new java.lang.IllegalArgumentException("Illegal interval start at " + store.start(0));
+	}
+	return new NonNegativeIntegerSequence(this, store);
     }
 
     /**
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.test.util.intseq;
+
+import java.util.Random;
+import org.data.curation.util.intseq.IntegerSequence;
+import org.data.curation.util.intseq.IntegerSequenceColumn;
+import org.data.curation.util.intseq.NonNegativeIntegerSequenceFactory;
+
+/**
+ * Measures the time to count the rows of a column that contain a value. The
+ * column-wide scan over the packed bounds is compared with probing each row
+ * sequence. Not run as part of the tests. Run the main method with the test
+ * class path, e.g.,
+ *
+ * java -cp target/classes:target/test-classes \
+ *      org.data.curation.test.util.intseq.IntegerSequenceColumnBenchmark
+ *
+ * Build with the vector profile and add --add-modules jdk.incubator.vector
+ * to measure the vector kernel. Set -Dintseq.scalarKernels=true to measure
+ * the scalar kernel in the same build.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public final class IntegerSequenceColumnBenchmark {
+
+    private static final int PROBES = 1000;
+    private static final int ROUNDS = 10;
+    private static final int ROWS = 100000;
+    private static final int SPAN = 1000000;
+
+    private IntegerSequenceColumnBenchmark() {
+
+    }
+
+    public static void main(String[] args) {
+	
+	NonNegativeIntegerSequenceFactory factory = new NonNegativeIntegerSequenceFactory();
+	Random random = new Random(42);
+	IntegerSequence[] sequences = new IntegerSequence[ROWS];
+	IntegerSequenceColumn column = new IntegerSequenceColumn(factory);
+	for (int iRow = 0; iRow < ROWS; iRow++) {
+	    sequences[iRow] = IntegerSequenceGenerator.sequence(factory, random, 16, SPAN);
+	    column.add(sequences[iRow]);
+	}
+	int[] probes = IntegerSequenceGenerator.values(random, PROBES, 0, SPAN);
+	
+	for (int iRound = 0; iRound < ROUNDS; iRound++) {
+	    long start = System.nanoTime();
+	    long columnCount = 0;
+	    for (int value : probes) {
+		columnCount += column.countContaining(value);
+	    }
+	    long columnTime = System.nanoTime() - start;
+	
+	    start = System.nanoTime();
+	    long rowCount = 0;
+	    for (int value : probes) {
+		for (IntegerSequence sequence : sequences) {
+		    if (sequence.contains(value)) {
+			rowCount++;
+		    }
+		}
+	    }
+	    long rowTime = System.nanoTime() - start;
+	
+	    if (columnCount != rowCount) {
+		throw new java.lang.IllegalStateException("Counts differ: " + columnCount + " and " + rowCount);
+	    }
+	    System.out.println("Round " + iRound + ": column scan " + (columnTime / PROBES) + " ns, row probes " + (rowTime / PROBES) + " ns per value over " + column.rows() + " rows");
+	}
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.test.util.intseq;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.data.curation.util.intseq.IntegerSequence;
+import org.data.curation.util.intseq.IntegerSequenceColumn;
+import org.data.curation.util.intseq.NonNegativeIntegerSequenceFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceColumnTest {
+
+    private final NonNegativeIntegerSequenceFactory _factory;
+
+    public IntegerSequenceColumnTest() {
+	
+	_factory = new NonNegativeIntegerSequenceFactory();
+    }
+
+    private IntegerSequenceColumn getColumn() {
+	
+	IntegerSequenceColumn column = new IntegerSequenceColumn(_factory, 1, 1);
+	column.add(_factory.getSequence("1-10,20-22,25-27"));
+	column.add(_factory.getSequence());
+	column.add(_factory.getSequence("2-3,5-6,21-22,24-27"));
+	column.add(_factory.getSequence("11-19,23,35-40"));
+	return column;
+    }
+
+    @Test
+    public void containsTest() {
+	
+	IntegerSequenceColumn column = this.getColumn();
+	
+	assertEquals("Column should have 4 rows", 4, column.rows());
+	for (int iRow = 0; iRow < column.rows(); iRow++) {
+	    IntegerSequence seq = column.get(iRow);
+	    for (int value = 0; value <= 41; value++) {
+		assertEquals("Row " + iRow + " contains " + value, seq.contains(value), column.contains(iRow, value));
+	    }
+	}
+	
+	BitSet rows = column.contains(22);
+	assertEquals("Rows containing 22", "{0, 2}", rows.toString());
+	for (int value = 0; value <= 41; value++) {
+	    assertEquals("Rows containing " + value, column.contains(value).cardinality(), column.countContaining(value));
+	}
+    }
+
+    @Test
+    public void countContainingTest() {
+	
+	/* Enough intervals to use the vector kernel if it is available */
+	Random random = new Random(27);
+	IntegerSequenceColumn column = new IntegerSequenceColumn(_factory);
+	for (int iRow = 0; iRow < 300; iRow++) {
+	    column.add(IntegerSequenceGenerator.sequence(_factory, random, 20, 1000));
+	}
+	for (int value = 0; value <= 1001; value++) {
+	    int count = 0;
+	    for (int iRow = 0; iRow < column.rows(); iRow++) {
+		if (column.get(iRow).contains(value)) {
+		    count++;
+		}
+	    }
+	    assertEquals("Rows containing " + value, count, column.countContaining(value));
+	}
+    }
+
+    @Test
+    public void estimatedSizeTest() {
+	
+	IntegerSequenceColumn column = new IntegerSequenceColumn(_factory, 1, 1);
+	long size = column.estimatedSizeInBytes();
+	for (int iRow = 0; iRow < 100; iRow++) {
+	    column.add(_factory.getSequence("1-5,10-20"));
+	}
+	assertTrue(column.estimatedSizeInBytes() > size);
+    }
+
+    @Test
+    public void intersectTest() {
+	
+	IntegerSequenceColumn column = this.getColumn();
+	IntegerSequence probe = _factory.getSequence("5-9,19-29");
+	
+	IntegerSequenceColumn result = column.intersect(probe);
+	assertEquals("Result should have 4 rows", 4, result.rows());
+	for (int iRow = 0; iRow < column.rows(); iRow++) {
+	    IntegerSequence expected = column.get(iRow).intersect(probe);
+	    assertTrue("Intersection for row " + iRow, expected.equals(result.get(iRow)));
+	    assertTrue("Intersection for row " + iRow, expected.equals(column.intersect(iRow, probe)));
+	    assertEquals("Overlap for row " + iRow, column.get(iRow).overlap(probe), column.overlap(iRow, probe));
+	}
+	assertEquals("Rows overlapping probe", "{0, 2, 3}", column.overlap(probe).toString());
+    }
+
+    @Test
+    public void lengthTest() {
+	
+	IntegerSequenceColumn column = this.getColumn();
+	
+	int[] lengths = column.lengths();
+	long total = 0;
+	for (int iRow = 0; iRow < column.rows(); iRow++) {
+	    total += lengths[iRow];
+	    assertEquals("Length of row " + iRow, column.get(iRow).length(), column.length(iRow));
+	    assertEquals("Length of row " + iRow, column.get(iRow).length(), lengths[iRow]);
+	    assertEquals("Intervals in row " + iRow, column.get(iRow).intervals(), column.intervals(iRow));
+	}
+	assertEquals("Total length of column", total, column.totalLength());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.test.util.intseq;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.data.curation.util.intseq.IntegerSequence;
+import org.data.curation.util.intseq.IntegerSequenceExpression;
+import org.data.curation.util.intseq.NonNegativeIntegerSequenceFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceExpressionTest {
+
+    private final NonNegativeIntegerSequenceFactory _factory;
+
+    public IntegerSequenceExpressionTest() {
+	
+	_factory = new NonNegativeIntegerSequenceFactory();
+    }
+
+    private void assertResult(String message, BitSet expected, IntegerSequenceExpression expression) {
+	
+	IntegerSequence result = expression.toSequence();
+	assertEquals(message + " (length)", expected.cardinality(), expression.length());
+	assertEquals(message + " (sequence length)", expected.cardinality(), result.length());
+	assertEquals(message + " (empty)", expected.isEmpty(), expression.isEmpty());
+	if (!expected.isEmpty()) {
+	    assertEquals(message + " (first)", expected.nextSetBit(0), expression.first());
+	}
+	for (int value = 0; value < 110; value++) {
+	    assertEquals(message + " (contains " + value + ")", expected.get(value), expression.contains(value));
+	    assertEquals(message + " (sequence contains " + value + ")", expected.get(value), result.contains(value));
+	}
+    }
+
+    private BitSet getBitSet(IntegerSequence sequence) {
+	
+	BitSet bits = new BitSet();
+	for (int iInterval = 0; iInterval < sequence.intervals(); iInterval++) {
+	    bits.set(sequence.intervalStart(iInterval), sequence.intervalEnd(iInterval) + 1);
+	}
+	return bits;
+    }
+
+    private IntegerSequence getSequence(Random random) {
+	
+	return IntegerSequenceGenerator.sequence(_factory, random, 40, 100);
+    }
+
+    @Test
+    public void expressionTest() {
+	
+	Random random = new Random(42);
+	for (int iRun = 0; iRun < 200; iRun++) {
+	    IntegerSequence a = this.getSequence(random);
+	    IntegerSequence b = this.getSequence(random);
+	    IntegerSequence c = this.getSequence(random);
+	    IntegerSequence d = this.getSequence(random);
+	    BitSet expected = this.getBitSet(a);
+	    expected.or(this.getBitSet(b));
+	    expected.and(this.getBitSet(c));
+	    expected.andNot(this.getBitSet(d));
+	    IntegerSequenceExpression expression = IntegerSequenceExpression.of(a).union(b).intersect(c).difference(d);
+	    this.assertResult("(A u B) n C \\ D", expected, expression);
+	    expected = new BitSet();
+	    expected.set(10, 91);
+	    expected.andNot(this.getBitSet(a));
+	    expected.or(this.getBitSet(d));
+	    this.assertResult("complement(A) u D", expected, IntegerSequenceExpression.of(a).complement(10, 90).union(d));
+	}
+    }
+
+    @Test(expected=java.lang.IllegalStateException.class)
+    public void firstOfEmptyExpression() {
+	
+	IntegerSequenceExpression.of(_factory.getSequence("1-5")).intersect(_factory.getSequence("7-9")).first();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.test.util.intseq;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.data.curation.util.intseq.IntegerSequence;
+import org.data.curation.util.intseq.IntegerSequenceColumn;
+import org.data.curation.util.intseq.IntegerSequenceFileReader;
+import org.data.curation.util.intseq.IntegerSequenceFileWriter;
+import org.data.curation.util.intseq.NonNegativeIntegerSequenceFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceFileTest {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private final NonNegativeIntegerSequenceFactory _factory;
+
+    public IntegerSequenceFileTest() {
+	
+	_factory = new NonNegativeIntegerSequenceFactory();
+    }
+
+    private IntegerSequenceFileReader getReader(File file, int bufferSize) throws IOException {
+	
+	return new IntegerSequenceFileReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), _factory, bufferSize);
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void invalidLineTest() throws IOException {
+	
+	File file = _folder.newFile();
+	Files.write(file.toPath(), "r1\t1-3,5\nr2\t1-3,2-5\n".getBytes(StandardCharsets.UTF_8));
+	try (IntegerSequenceFileReader reader = this.getReader(file, 1024)) {
+	    assertTrue("First line", reader.next());
+	    assertEquals("First line", "1-3,5", reader.sequence().toString());
+	    reader.next();
+	}
+    }
+
+    @Test
+    public void readTextTest() throws IOException {
+	
+	File file = _folder.newFile();
+	Files.write(file.toPath(), "r1\t1-3,5\r\n\nr2\t\nr3\t2147483647".getBytes(StandardCharsets.UTF_8));
+	try (IntegerSequenceFileReader reader = this.getReader(file, 4)) {
+	    assertTrue("First line", reader.next());
+	    assertEquals("First id", "r1", reader.recordId());
+	    assertEquals("First sequence", "1-3,5", reader.sequence().toString());
+	    assertTrue("Second line", reader.next());
+	    assertEquals("Second id", "r2", reader.recordId());
+	    assertTrue("Second sequence", reader.sequence().isEmpty());
+	    assertTrue("Third line", reader.next());
+	    assertEquals("Third id", "r3", reader.recordId());
+	    assertEquals("Third line number", 4, reader.lineNumber());
+	    assertEquals("Third sequence", Integer.MAX_VALUE, reader.sequence().lastValue());
+	    assertFalse("End of file", reader.next());
+	}
+    }
+
+    @Test
+    public void writeReadTest() throws IOException {
+	
+	Random random = new Random(42);
+	List<IntegerSequence> sequences = new ArrayList<>();
+	for (int iSeq = 0; iSeq < 500; iSeq++) {
+	    sequences.add(IntegerSequenceGenerator.sequence(_factory, random, 50, 1000000));
+	}
+	
+	File file = _folder.newFile();
+	try (IntegerSequenceFileWriter writer = new IntegerSequenceFileWriter(FileChannel.open(file.toPath(), StandardOpenOption.WRITE), 100)) {
+	    for (int iSeq = 0; iSeq < sequences.size(); iSeq++) {
+		writer.write("record-" + iSeq, sequences.get(iSeq));
+	    }
+	}
+	
+	for (int bufferSize : new int[]{16, 1024, IntegerSequenceFileReader.DEFAULT_BUFFER_SIZE}) {
+	    IntegerSequenceColumn column = new IntegerSequenceColumn(_factory);
+	    try (IntegerSequenceFileReader reader = this.getReader(file, bufferSize)) {
+		int index = 0;
+		while (reader.next()) {
+		    IntegerSequence expected = sequences.get(index);
+		    assertEquals("Record id", "record-" + index, reader.recordId());
+		    assertTrue("Sequence " + index, expected.equals(reader.sequence()));
+		    assertEquals("Row index", index, reader.addTo(column));
+		    index++;
+		}
+		assertEquals("Number of lines", sequences.size(), index);
+	    }
+	    for (int iSeq = 0; iSeq < sequences.size(); iSeq++) {
+		assertTrue("Column row " + iSeq, sequences.get(iSeq).equals(column.get(iSeq)));
+	    }
+	}
+    }
+}
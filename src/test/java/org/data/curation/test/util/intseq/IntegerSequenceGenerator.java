@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.test.util.intseq;
+
+import java.util.Random;
+import org.data.curation.util.intseq.IntegerSequence;
+import org.data.curation.util.intseq.IntegerSequenceFactory;
+
+/**
+ * Random sequences for tests that compare operations against a reference
+ * result. Values are drawn uniformly from a range and may contain
+ * duplicates.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public final class IntegerSequenceGenerator {
+
+    private IntegerSequenceGenerator() {
+
+    }
+
+    /**
+     * Random sequence with less than maxCount values in [0-span).
+     *
+     * @param factory 
+     * @param random 
+     * @param maxCount 
+     * @param span 
+     * @return 
+     */
+    public static IntegerSequence sequence(IntegerSequenceFactory factory, Random random, int maxCount, int span) {
+	
+	return sequence(factory, random, maxCount, 0, span);
+    }
+
+    /**
+     * Random sequence with less than maxCount values in
+     * [offset-offset + span).
+     *
+     * @param factory 
+     * @param random 
+     * @param maxCount 
+     * @param offset 
+     * @param span 
+     * @return 
+     */
+    public static IntegerSequence sequence(IntegerSequenceFactory factory, Random random, int maxCount, int offset, int span) {
+	
+	return factory.fromUnsorted(values(random, random.nextInt(maxCount), offset, span));
+    }
+
+    /**
+     * Array of count random values in [offset-offset + span).
+     *
+     * @param random 
+     * @param count 
+     * @param offset 
+     * @param span 
+     * @return 
+     */
+    public static int[] values(Random random, int count, int offset, int span) {
+	
+	int[] values = new int[count];
+	for (int iValue = 0; iValue < values.length; iValue++) {
+	    values[iValue] = offset + random.nextInt(span);
+	}
+	return values;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.test.util.intseq;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.data.curation.util.intseq.IntegerSequence;
+import org.data.curation.util.intseq.IntegerSequenceJoin;
+import org.data.curation.util.intseq.IntegerSequenceJoinHandler;
+import org.data.curation.util.intseq.NonNegativeIntegerSequenceFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceJoinTest {
+
+    private final NonNegativeIntegerSequenceFactory _factory;
+
+    public IntegerSequenceJoinTest() {
+	
+	_factory = new NonNegativeIntegerSequenceFactory();
+    }
+
+    private List<IntegerSequence> getSequences(Random random, int count) {
+	
+	ArrayList<IntegerSequence> sequences = new ArrayList<>();
+	for (int iSeq = 0; iSeq < count; iSeq++) {
+	    sequences.add(IntegerSequenceGenerator.sequence(_factory, random, 20, 100));
+	}
+	return sequences;
+    }
+
+    @Test
+    public void overlapJoinTest() {
+	
+	Random random = new Random(42);
+	List<IntegerSequence> left = this.getSequences(random, 50);
+	List<IntegerSequence> right = this.getSequences(random, 40);
+	
+	final List<String> result = new ArrayList<>();
+	IntegerSequenceJoin.overlapJoin(left, right, new IntegerSequenceJoinHandler() {
+	    @Override
+	    public void overlap(int left, int right, int length) {
+		result.add(left + ":" + right + ":" + length);
+	    }
+	});
+	
+	List<String> expected = new ArrayList<>();
+	for (int iLeft = 0; iLeft < left.size(); iLeft++) {
+	    for (int iRight = 0; iRight < right.size(); iRight++) {
+		IntegerSequence s1 = left.get(iLeft);
+		IntegerSequence s2 = right.get(iRight);
+		if (s1.overlap(s2)) {
+		    expected.add(iLeft + ":" + iRight + ":" + s1.intersectionLength(s2));
+		}
+	    }
+	}
+	
+	assertFalse("Join result should not be empty", expected.isEmpty());
+	assertEquals("Join result should match nested loop", expected, result);
+    }
+}
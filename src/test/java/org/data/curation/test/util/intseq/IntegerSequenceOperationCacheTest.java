@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.test.util.intseq;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.data.curation.util.intseq.IntegerSequence;
+import org.data.curation.util.intseq.IntegerSequenceOperationCache;
+import org.data.curation.util.intseq.NonNegativeIntegerSequenceFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceOperationCacheTest {
+
+    private final NonNegativeIntegerSequenceFactory _factory;
+
+    public IntegerSequenceOperationCacheTest() {
+	
+	_factory = new NonNegativeIntegerSequenceFactory();
+    }
+
+    @Test
+    public void cacheTest() {
+	
+	IntegerSequence seqA = _factory.getSequence("1-10,20-30");
+	IntegerSequence seqB = _factory.getSequence("5-25");
+	
+	IntegerSequenceOperationCache cache = new IntegerSequenceOperationCache(1024 * 1024);
+	IntegerSequence intersection = cache.intersect(seqA, seqB);
+	assertTrue(intersection.equals(seqA.intersect(seqB)));
+	assertSame(intersection, cache.intersect(seqA, seqB));
+	assertTrue(cache.union(seqA, seqB).equals(seqA.union(seqB)));
+	assertTrue(cache.difference(seqA, seqB).equals(seqA.difference(seqB)));
+	assertTrue(cache.overlap(seqA, seqB));
+	assertTrue(cache.overlap(seqA, seqB));
+	assertEquals(4, cache.size());
+	assertEquals(2, cache.hitCount());
+	assertEquals(4, cache.missCount());
+	assertTrue(cache.weight() > 0);
+	
+	/* Keys use operand identity */
+	IntegerSequence copyA = _factory.getSequence("1-10,20-30");
+	assertNotSame(intersection, cache.intersect(copyA, seqB));
+	assertEquals(5, cache.size());
+	
+	cache.clear();
+	assertEquals(0, cache.size());
+	assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void concurrentTest() throws InterruptedException {
+	
+	final IntegerSequence[] sequences = new IntegerSequence[8];
+	for (int iSeq = 0; iSeq < sequences.length; iSeq++) {
+	    sequences[iSeq] = _factory.getSequence((iSeq * 10) + "-" + ((iSeq * 10) + 25) + ",200-" + (200 + iSeq));
+	}
+	final IntegerSequenceOperationCache cache = new IntegerSequenceOperationCache(4096);
+	final AtomicInteger errors = new AtomicInteger(0);
+	
+	Thread[] threads = new Thread[4];
+	for (int iThread = 0; iThread < threads.length; iThread++) {
+	    threads[iThread] = new Thread() {
+		@Override
+		public void run() {
+		    for (int iRun = 0; iRun < 2000; iRun++) {
+			IntegerSequence left = sequences[iRun % sequences.length];
+			IntegerSequence right = sequences[(iRun / sequences.length) % sequences.length];
+			if (!cache.union(left, right).equals(left.union(right))) {
+			    errors.incrementAndGet();
+			}
+			if (cache.overlap(left, right) != left.overlap(right)) {
+			    errors.incrementAndGet();
+			}
+		    }
+		}
+	    };
+	    threads[iThread].start();
+	}
+	for (Thread thread : threads) {
+	    thread.join();
+	}
+	assertEquals(0, errors.get());
+	assertEquals(16000, cache.hitCount() + cache.missCount());
+	assertTrue(cache.weight() <= cache.maxWeight());
+    }
+
+    @Test
+    public void evictionTest() {
+	
+	IntegerSequence seqA = _factory.getSequence("1-10,20-30,40-50");
+	IntegerSequenceOperationCache cache = new IntegerSequenceOperationCache(1000);
+	for (int iSeq = 0; iSeq < 100; iSeq++) {
+	    cache.union(seqA, _factory.getSequence((100 + (iSeq * 10)) + "-" + (105 + (iSeq * 10))));
+	    assertTrue(cache.weight() <= cache.maxWeight());
+	}
+	assertTrue(cache.evictionCount() > 0);
+	assertEquals(100 - cache.evictionCount(), cache.size());
+	
+	/* Results that exceed the maximum weight are not cached */
+	IntegerSequenceOperationCache tiny = new IntegerSequenceOperationCache(8);
+	IntegerSequence result = tiny.intersect(seqA, seqA);
+	assertTrue(result.equals(seqA));
+	assertEquals(0, tiny.size());
+    }
+
+    @Test
+    public void weakOperandTest() throws InterruptedException {
+	
+	IntegerSequence snapshot = _factory.getSequence("1-10,20-30,40-50");
+	IntegerSequenceOperationCache cache = new IntegerSequenceOperationCache(1024 * 1024);
+	IntegerSequence record = _factory.getSequence("5-25");
+	assertTrue(cache.overlap(record, snapshot));
+	for (int iSeq = 0; iSeq < 100; iSeq++) {
+	    cache.overlap(_factory.getSequence((100 + iSeq) + "-" + (200 + iSeq)), snapshot);
+	}
+	assertEquals(101, cache.size());
+	
+	/* Results for collected operands are removed */
+	for (int iRun = 0; (iRun < 50) && (cache.size() > 1); iRun++) {
+	    System.gc();
+	    Thread.sleep(10);
+	}
+	assertEquals(1, cache.size());
+	assertEquals(0, cache.evictionCount());
+	assertTrue(cache.overlap(record, snapshot));
+	assertEquals(1, cache.hitCount());
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2016 New York University.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.data.curation.test.util.intseq;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+import org.data.curation.util.intseq.IntegerSequence;
+import org.data.curation.util.intseq.IntegerSequenceRelation;
+import org.data.curation.util.intseq.NonNegativeIntegerSequenceFactory;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Randomized tests that compare sequence operations against a bit set
+ * reference implementation. Sequences are generated with a fixed seed and
+ * controlled density (fraction of values in the span that are contained in
+ * the sequence) and fragmentation (average interval length).
+ *
+ * The scaling tests measure the bytes that are allocated by the current
+ * thread for each operation. Operations are expected to allocate at most
+ * linear space in the number of intervals, i.e., doubling the input size
+ * must not more than double the allocated bytes (plus some slack). The
+ * scaling tests are skipped if the JVM does not support thread allocation
+ * counters.
+ *
+ * @author Heiko Mueller <heiko.mueller@nyu.edu>
+ */
+public class IntegerSequenceRandomizedTest {
+
+    private static final long SEED = 20160901L;
+
+    private final NonNegativeIntegerSequenceFactory _factory;
+
+    public IntegerSequenceRandomizedTest() {
+	
+	_factory = new NonNegativeIntegerSequenceFactory();
+    }
+
+    /**
+     * Bytes allocated by the current thread, or -1 if not supported.
+     *
+     * @return 
+     */
+    private long allocatedBytes() {
+	
+	java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if (bean instanceof com.sun.management.ThreadMXBean) {
+	    com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+	    if ((sunBean.isThreadAllocatedMemorySupported()) && (sunBean.isThreadAllocatedMemoryEnabled())) {
+		return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     * Compare all operations on the two sequences against the bit set
+     * results.
+     *
+     * @param config 
+     * @param random 
+     * @param bitsA 
+     * @param bitsB 
+     * @param span 
+     */
+    private void assertOperations(String config, Random random, BitSet bitsA, BitSet bitsB, int span) {
+	
+	IntegerSequence seqA = this.toSequence(bitsA);
+	IntegerSequence seqB = this.toSequence(bitsB);
+	this.assertSequence(config + ": sequence", bitsA, seqA);
+	
+	BitSet union = (BitSet)bitsA.clone();
+	union.or(bitsB);
+	this.assertSequence(config + ": union", union, seqA.union(seqB));
+	
+	BitSet intersection = (BitSet)bitsA.clone();
+	intersection.and(bitsB);
+	this.assertSequence(config + ": intersect", intersection, seqA.intersect(seqB));
+	assertEquals(config + ": overlap", !intersection.isEmpty(), seqA.overlap(seqB));
+	
+	BitSet difference = (BitSet)bitsA.clone();
+	difference.andNot(bitsB);
+	this.assertSequence(config + ": difference", difference, seqA.difference(seqB));
+	
+	BitSet symmetricDifference = (BitSet)bitsA.clone();
+	symmetricDifference.xor(bitsB);
+	this.assertSequence(config + ": symmetric difference", symmetricDifference, seqA.symmetricDifference(seqB));
+	
+	IntegerSequenceRelation relation;
+	if (bitsA.equals(bitsB)) {
+	    relation = IntegerSequenceRelation.EQUAL;
+	} else if (difference.isEmpty()) {
+	    relation = IntegerSequenceRelation.SUBSET;
+	} else if (intersection.equals(bitsB)) {
+	    relation = IntegerSequenceRelation.SUPERSET;
+	} else if (intersection.isEmpty()) {
+	    relation = IntegerSequenceRelation.DISJOINT;
+	} else {
+	    relation = IntegerSequenceRelation.OVERLAP;
+	}
+	assertEquals(config + ": relate", relation, seqA.relate(seqB));
+	
+	int value = random.nextInt(span);
+	BitSet after = (BitSet)bitsA.clone();
+	after.clear(0, value + 1);
+	this.assertSequence(config + ": after " + value, after, seqA.after(value));
+	
+	BitSet close = (BitSet)bitsA.clone();
+	close.clear(value + 1, Math.max(value + 1, close.length()));
+	this.assertSequence(config + ": close " + value, close, seqA.close(value));
+	
+	int appendValue = bitsA.length() + random.nextInt(2);
+	BitSet append = (BitSet)bitsA.clone();
+	append.set(appendValue);
+	this.assertSequence(config + ": append " + appendValue, append, seqA.append(appendValue));
+	
+	for (int iValue = 0; iValue < 1000; iValue++) {
+	    int probe = random.nextInt(span);
+	    assertEquals(config + ": contains " + probe, bitsA.get(probe), seqA.contains(probe));
+	}
+    }
+
+    private void assertSequence(String message, BitSet expected, IntegerSequence sequence) {
+	
+	assertEquals(message + " (length)", expected.cardinality(), sequence.length());
+	int start = expected.nextSetBit(0);
+	int iInterval = 0;
+	while (start >= 0) {
+	    int end = expected.nextClearBit(start) - 1;
+	    assertTrue(message + " (intervals)", iInterval < sequence.intervals());
+	    assertEquals(message + " (start of interval " + iInterval + ")", start, sequence.intervalStart(iInterval));
+	    assertEquals(message + " (end of interval " + iInterval + ")", end, sequence.intervalEnd(iInterval));
+	    iInterval++;
+	    start = expected.nextSetBit(end + 1);
+	}
+	assertEquals(message + " (intervals)", iInterval, sequence.intervals());
+    }
+
+    /**
+     * Generate a random set of values in [0-span) with the given density and
+     * average interval length.
+     *
+     * @param random 
+     * @param span 
+     * @param density 
+     * @param runLength 
+     * @return 
+     */
+    private BitSet generate(Random random, int span, double density, int runLength) {
+	
+	int gapLength = Math.max(1, (int)Math.round((runLength * (1.0 - density)) / density));
+	BitSet bits = new BitSet(span);
+	int pos = random.nextInt(gapLength + 1);
+	while (pos < span) {
+	    int length = 1 + random.nextInt((2 * runLength) - 1);
+	    bits.set(pos, Math.min(pos + length, span));
+	    pos += length + 1 + random.nextInt(2 * gapLength);
+	}
+	return bits;
+    }
+
+    /**
+     * Minimum number of bytes that are allocated by the given operation over
+     * several runs.
+     *
+     * @param operation 
+     * @return 
+     */
+    private long measure(Operation operation) {
+	
+	long min = Long.MAX_VALUE;
+	for (int iRun = 0; iRun < 5; iRun++) {
+	    long before = this.allocatedBytes();
+	    operation.run();
+	    min = Math.min(min, this.allocatedBytes() - before);
+	}
+	return min;
+    }
+
+    private IntegerSequence toSequence(BitSet bits) {
+	
+	ArrayList<int[]> intervals = new ArrayList<>();
+	int start = bits.nextSetBit(0);
+	while (start >= 0) {
+	    int end = bits.nextClearBit(start) - 1;
+	    intervals.add(new int[]{start, end});
+	    start = bits.nextSetBit(end + 1);
+	}
+	return _factory.getSequence(intervals.toArray(new int[intervals.size()][]));
+    }
+
+    @Test
+    public void allocationFreeQueriesTest() {
+	
+	Assume.assumeTrue(this.allocatedBytes() >= 0);
+	
+	Random random = new Random(SEED);
+	final IntegerSequence seqA = this.toSequence(this.generate(random, 1000000, 0.5, 8));
+	final IntegerSequence seqB = this.toSequence(this.generate(random, 1000000, 0.5, 8));
+	Operation queries = new Operation() {
+	    @Override
+	    public void run() {
+		for (int value = 0; value < 100000; value += 7) {
+		    seqA.contains(value);
+		}
+		seqA.relate(seqB);
+		seqA.overlap(seqB);
+		seqA.contains(seqB);
+	    }
+	};
+	/* Warm up (also computes cached summaries) */
+	queries.run();
+	long bytes = this.measure(queries);
+	assertTrue("Queries allocated " + bytes + " bytes", bytes < 4096);
+    }
+
+    @Test
+    public void correctnessTest() {
+	
+	Random random = new Random(SEED);
+	double[] densities = new double[]{0.05, 0.5, 0.95};
+	int[] runLengths = new int[]{1, 8, 64};
+	for (double density : densities) {
+	    for (int runLength : runLengths) {
+		String config = "density " + density + ", run length " + runLength;
+		for (int iRun = 0; iRun < 5; iRun++) {
+		    BitSet bitsA = this.generate(random, 50000, density, runLength);
+		    BitSet bitsB = this.generate(random, 50000, density, runLength);
+		    this.assertOperations(config, random, bitsA, bitsB, 50000);
+		}
+	    }
+	}
+    }
+
+    @Test
+    public void smallSpanTest() {
+	
+	/* Union where the tail of one sequence overlaps the last merged
+	 * interval */
+	IntegerSequence seqA = _factory.getSequence("8-37,58,116,244-264,279,282,284-296");
+	IntegerSequence seqB = _factory.getSequence("261-293");
+	assertEquals("8-37,58,116,244-296", seqA.union(seqB).toString());
+	assertEquals("8-37,58,116,244-296", seqB.union(seqA).toString());
+	
+	Random random = new Random(SEED);
+	double[] densities = new double[]{0.3, 0.6, 0.9};
+	int[] runLengths = new int[]{1, 3, 20};
+	for (int iRun = 0; iRun < 2000; iRun++) {
+	    int span = 50 + random.nextInt(350);
+	    double densityA = densities[random.nextInt(densities.length)];
+	    double densityB = densities[random.nextInt(densities.length)];
+	    int runLengthA = runLengths[random.nextInt(runLengths.length)];
+	    int runLengthB = runLengths[random.nextInt(runLengths.length)];
+	    BitSet bitsA = this.generate(random, span, densityA, runLengthA);
+	    BitSet bitsB = this.generate(random, span, densityB, runLengthB);
+	    String config = "span " + span + ", run " + iRun;
+	    this.assertOperations(config, random, bitsA, bitsB, span);
+	}
+    }
+
+    @Test
+    public void scalingTest() {
+	
+	Assume.assumeTrue(this.allocatedBytes() >= 0);
+	
+	Random random = new Random(SEED);
+	String[] names = new String[]{"union", "intersect", "after", "close", "append"};
+	long[] previous = null;
+	for (int span = 100000; span <= 400000; span *= 2) {
+	    final IntegerSequence seqA = this.toSequence(this.generate(random, span, 0.5, 4));
+	    final IntegerSequence seqB = this.toSequence(this.generate(random, span, 0.5, 4));
+	    final int middle = span / 2;
+	    final int last = seqA.lastValue();
+	    Operation[] operations = new Operation[]{
+		new Operation() {
+		    @Override
+		    public void run() {
+			seqA.union(seqB);
+		    }
+		},
+		new Operation() {
+		    @Override
+		    public void run() {
+			seqA.intersect(seqB);
+		    }
+		},
+		new Operation() {
+		    @Override
+		    public void run() {
+			seqA.after(middle);
+		    }
+		},
+		new Operation() {
+		    @Override
+		    public void run() {
+			seqA.close(middle);
+		    }
+		},
+		new Operation() {
+		    @Override
+		    public void run() {
+			seqA.append(last + 2);
+		    }
+		}
+	    };
+	    long[] bytes = new long[operations.length];
+	    for (int iOp = 0; iOp < operations.length; iOp++) {
+		bytes[iOp] = this.measure(operations[iOp]);
+		if (previous != null) {
+		    long budget = (previous[iOp] * 5) / 2 + 4096;
+		    assertTrue(names[iOp] + " allocated " + bytes[iOp] + " bytes for span " + span + " (budget " + budget + ")", bytes[iOp] <= budget);
+		}
+	    }
+	    previous = bytes;
+	}
+    }
+
+    @Test
+    public void skewedDifferenceTest() {
+	
+	Assume.assumeTrue(this.allocatedBytes() >= 0);
+	
+	Random random = new Random(SEED);
+	IntegerSequence small = _factory.getSequence("500000-500010,500100-500200");
+	/* Warm up on a different operand to measure the first difference with
+	 * a fresh operand */
+	small.difference(this.toSequence(this.generate(random, 1000000, 0.5, 4)));
+	IntegerSequence large = this.toSequence(this.generate(random, 1000000, 0.5, 4));
+	long size = large.estimatedSizeInBytes();
+	long before = this.allocatedBytes();
+	small.difference(large);
+	long bytes = this.allocatedBytes() - before;
+	assertTrue("Difference allocated " + bytes + " bytes", bytes < 16384);
+	/* The difference does not compute the summary of the large operand */
+	assertEquals(size, large.estimatedSizeInBytes());
+    }
+
+    /**
+     * Operation that is measured by the scaling tests.
+     */
+    private interface Operation {
+	
+	void run();
+    }
+}
@@ -15,11 +15,24 @@
  */
 package org.data.curation.test.util.intseq;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import org.data.curation.util.intseq.BoundedIntegerSequenceFactory;
 import org.data.curation.util.intseq.IntegerSequence;
+import org.data.curation.util.intseq.IntegerSequenceAccumulator;
+import org.data.curation.util.intseq.IntegerSequenceCursor;
+import org.data.curation.util.intseq.IntegerSequenceDelta;
 import org.data.curation.util.intseq.IntegerSequenceFactory;
+import org.data.curation.util.intseq.IntegerSequenceLayout;
+import org.data.curation.util.intseq.IntegerSequenceMapping;
+import org.data.curation.util.intseq.IntegerSequenceProbe;
+import org.data.curation.util.intseq.IntegerSequenceRelation;
+import org.data.curation.util.intseq.IntegerSequenceSketch;
+import org.data.curation.util.intseq.IntegerSequenceSummary;
 import org.data.curation.util.intseq.NonNegativeIntegerSequence;
 import org.data.curation.util.intseq.NonNegativeIntegerSequenceFactory;
 import org.junit.After;
@@ -58,6 +71,28 @@ public class IntegerSequenceTest {
     public void tearDown() {
     }
     
+    @Test
+    public void accumulatorTest() {
+	
+	Random random = new Random(3);
+	IntegerSequenceAccumulator accumulator = new IntegerSequenceAccumulator(_factory);
+	IntegerSequence expected = _factory.getSequence();
+	for (int iSeq = 0; iSeq < 1000; iSeq++) {
+	    IntegerSequence s = IntegerSequenceGenerator.sequence(_factory, random, 10, random.nextInt(10000), 50);
+	    accumulator.add(s);
+	    expected = expected.union(s);
+	    if (iSeq % 100 == 0) {
+		assertTrue("Intermediate union", expected.equals(accumulator.toSequence()));
+	    }
+	}
+	accumulator.add(20000, 20010);
+	accumulator.add(20011, 20011);
+	expected = expected.union(_factory.getSequence("20000-20011"));
+	assertTrue("Accumulated union", expected.equals(accumulator.toSequence()));
+	accumulator.clear();
+	assertTrue("Cleared accumulator", accumulator.toSequence().isEmpty());
+    }
+
     @Test
     public void afterVersionTest() {
 	
@@ -121,6 +156,76 @@ public class IntegerSequenceTest {
 	assertEquals("Last value of s3 should be 19", 19, s3.lastValue());
     }
     
+    @Test
+    public void bitSetTest() {
+	
+	IntegerSequence seq = _factory.getSequence("0,2-5,63-64,127-200,256");
+	BitSet bits = seq.toBitSet();
+	assertEquals(seq.length(), bits.cardinality());
+	assertTrue(seq.equals(_factory.fromBitSet(bits)));
+	long[] words = seq.toWords();
+	assertEquals(5, words.length);
+	assertTrue(Arrays.equals(bits.toLongArray(), words));
+	assertTrue(seq.equals(_factory.fromWords(words)));
+	assertTrue(_factory.fromWords(new long[]{-1L, -1L}).equals(_factory.getSequence("0-127")));
+	assertTrue(_factory.fromWords(new long[]{0L, 0L}).isEmpty());
+	assertTrue(_factory.fromBitSet(new BitSet()).isEmpty());
+	assertEquals(0, _factory.getSequence().toWords().length);
+	
+	Random random = new Random(5);
+	for (int iRun = 0; iRun < 100; iRun++) {
+	    BitSet expected = new BitSet();
+	    int pos = random.nextInt(100);
+	    while (pos < 2000) {
+		int length = random.nextInt(150) + 1;
+		expected.set(pos, pos + length);
+		pos += length + random.nextInt(100) + 1;
+	    }
+	    IntegerSequence s = _factory.fromBitSet(expected);
+	    assertEquals(expected, s.toBitSet());
+	    assertTrue(Arrays.equals(expected.toLongArray(), s.toWords()));
+	    assertTrue(s.equals(_factory.fromWords(expected.toLongArray())));
+	}
+    }
+
+    @Test
+    public void boundedFactoryTest() {
+	
+	BoundedIntegerSequenceFactory tiny = new BoundedIntegerSequenceFactory(255);
+	NonNegativeIntegerSequence seqA = tiny.getSequence("0-10,100,200-255");
+	NonNegativeIntegerSequence seqB = tiny.getSequence("5-150");
+	assertEquals(IntegerSequenceLayout.TINY, seqA.layout());
+	assertEquals("0-10,100,200-255", seqA.toString());
+	assertEquals(IntegerSequenceLayout.TINY, seqA.union(seqB).layout());
+	assertEquals("0-150,200-255", seqA.union(seqB).toString());
+	assertEquals("5-10,100", seqA.intersect(seqB).toString());
+	assertEquals("11-99,101-150", seqB.difference(seqA).toString());
+	assertEquals(IntegerSequenceLayout.COMPACT, tiny.getSequence("1,3-5,256-300").layout());
+	
+	BoundedIntegerSequenceFactory compact = new BoundedIntegerSequenceFactory(65535);
+	IntegerSequence singletons = compact.getSequence("1,3,5,65535");
+	assertEquals(IntegerSequenceLayout.COMPACT_SINGLETONS, singletons.layout());
+	assertTrue(singletons.contains(65535));
+	assertFalse(singletons.contains(4));
+	assertTrue(singletons.estimatedSizeInBytes() < _factory.getSequence("1,3,5,65535").estimatedSizeInBytes());
+	assertEquals(IntegerSequenceLayout.COMPACT, compact.getSequence("1-3,10-20,65530-65535").layout());
+	assertEquals(IntegerSequenceLayout.SINGLETONS, compact.getSequence("1,3,65536").layout());
+	
+	Random random = new Random(17);
+	for (int iRun = 0; iRun < 100; iRun++) {
+	    int[] valuesA = IntegerSequenceGenerator.values(random, random.nextInt(30) + 2, 0, 256);
+	    int[] valuesB = IntegerSequenceGenerator.values(random, random.nextInt(30) + 2, 0, 256);
+	    IntegerSequence expectedA = _factory.fromUnsorted(valuesA);
+	    IntegerSequence expectedB = _factory.fromUnsorted(valuesB);
+	    IntegerSequence narrowA = tiny.fromUnsorted(valuesA);
+	    IntegerSequence narrowB = tiny.fromUnsorted(valuesB);
+	    assertTrue(expectedA.equals(narrowA));
+	    assertTrue(expectedA.union(expectedB).equals(narrowA.union(narrowB)));
+	    assertTrue(expectedA.intersect(expectedB).equals(narrowA.intersect(narrowB)));
+	    assertEquals(expectedA.relate(expectedB), narrowA.relate(narrowB));
+	}
+    }
+
     @Test
     public void closeTimestampTest() {
 
@@ -171,6 +276,33 @@ public class IntegerSequenceTest {
 	}
     }
     
+    @Test
+    public void countTest() {
+	
+	IntegerSequence s = _factory.getSequence("1-3,5-6,10,20-22,25-27,30");
+	for (int from = 0; from < 32; from++) {
+	    for (int to = from - 1; to < 32; to++) {
+		int expected = 0;
+		for (int value = from; value <= to; value++) {
+		    if (s.contains(value)) {
+			expected++;
+		    }
+		}
+		assertEquals("Count in " + from + "-" + to, expected, s.count(from, to));
+		int[] range = s.intervalsIn(from, to);
+		int overlapping = 0;
+		for (int iInterval = 0; iInterval < s.intervals(); iInterval++) {
+		    if ((from <= to) && (s.intervalEnd(iInterval) >= from) && (s.intervalStart(iInterval) <= to)) {
+			assertTrue("Interval " + iInterval + " in range " + from + "-" + to, (iInterval >= range[0]) && (iInterval < range[1]));
+			overlapping++;
+		    }
+		}
+		assertEquals("Intervals in " + from + "-" + to, overlapping, range[1] - range[0]);
+	    }
+	}
+	assertEquals("Count in empty sequence", 0, _factory.getSequence().count(0, 10));
+    }
+
     @Test(expected=java.lang.IllegalArgumentException.class)
     public void createSequenceWithInvalidIntervalSizeTest() {
 	
@@ -201,6 +333,62 @@ public class IntegerSequenceTest {
 	_factory.getSequence(new int[][]{{1, 3},{3, 5}, {9, 13}});
     }
 
+    @Test
+    public void coarsenTest() {
+	
+	IntegerSequence s = _factory.getSequence("1-3,5-6,10,20-22,24,40-41");
+	assertTrue("Coarsen to same size", s == s.coarsen(6));
+	IntegerSequence c = s.coarsen(3);
+	assertEquals("Coarsened intervals", 3, c.intervals());
+	assertTrue("Coarsened sequence should contain original", c.contains(s));
+	assertEquals("Coarsen error", 5, c.length() - s.length());
+	assertEquals("Coarsen error", 5, s.coarsenError(3));
+	assertEquals("Coarsen error for same size", 0, s.coarsenError(6));
+	c = s.coarsen(1);
+	assertEquals("Coarsen to single interval", 1, c.intervals());
+	assertEquals("Coarsen to single interval", 41, c.length());
+	assertEquals("Coarsen error for single interval", 41 - s.length(), s.coarsenError(1));
+	
+	/* The error exceeds the length that can be computed as an integer */
+	IntegerSequence wide = _factory.getSequence("0," + Integer.MAX_VALUE);
+	assertEquals("0-" + Integer.MAX_VALUE, wide.coarsen(1).toString());
+	assertEquals(Integer.MAX_VALUE - 1L, wide.coarsenError(1));
+    }
+
+    @Test
+    public void complementTest() {
+	
+	NonNegativeIntegerSequence seq = _factory.getSequence("2-4,7,10-12");
+	assertEquals("0-1,5-6,8-9,13-15", seq.complement(15).toString());
+	assertEquals("0-1,5-6,8-9", seq.complement(10).toString());
+	assertEquals("0-1,5-6", seq.complement(7).toString());
+	assertEquals("0-1", seq.complement(3).toString());
+	assertEquals("0-5", ((NonNegativeIntegerSequence)_factory.getSequence()).complement(5).toString());
+	assertEquals("", _factory.getSequence("0-5").complement(3).toString());
+	assertEquals("1", _factory.getSequence("0,2-8").complement(5).toString());
+	
+	Random random = new Random(11);
+	for (int iRun = 0; iRun < 100; iRun++) {
+	    NonNegativeIntegerSequence s = (NonNegativeIntegerSequence)IntegerSequenceGenerator.sequence(_factory, random, 50, 200);
+	    int universeEnd = random.nextInt(250);
+	    NonNegativeIntegerSequence complement = s.complement(universeEnd);
+	    IntegerSequence expected = _factory.getSequence("0-" + universeEnd).difference(s);
+	    assertTrue("Complement of " + s + " in 0-" + universeEnd, expected.equals(complement));
+	    for (int value = 0; value <= 260; value++) {
+		assertEquals(expected.contains(value), complement.contains(value));
+	    }
+	    IntegerSequence other = _factory.getSequence("20-60,90,150-170");
+	    assertTrue(expected.intersect(other).equals(complement.intersect(other)));
+	    assertEquals(expected.overlap(other), complement.overlap(other));
+	}
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void complementWithNegativeUniverse() {
+	
+	_factory.getSequence("1-5").complement(-1);
+    }
+
     @Test
     public void containsTimeSequenceTest() {
 	
@@ -268,12 +456,216 @@ public class IntegerSequenceTest {
 	assertFalse(s.toIntervalString() + " should not contain 40", s.contains(40));
     }
     
+    @Test
+    public void cursorTest() {
+	
+	IntegerSequence s = _factory.getSequence("1-10,20-22,25-27,30,32,34,36,38,40-45,50");
+	
+	IntegerSequenceCursor cursor = s.cursor();
+	int index = 0;
+	while (cursor.nextInterval()) {
+	    assertEquals("Unexpected interval start", s.intervalStart(index), cursor.currentStart());
+	    assertEquals("Unexpected interval end", s.intervalEnd(index), cursor.currentEnd());
+	    index++;
+	}
+	assertEquals("Cursor should visit all intervals", s.intervals(), index);
+	assertTrue("Cursor should be exhausted", cursor.isExhausted());
+	
+	cursor = s.cursor();
+	assertTrue("Advance to 0", cursor.advanceTo(0));
+	assertEquals("Advance to 0", 1, cursor.currentStart());
+	assertTrue("Advance to 23", cursor.advanceTo(23));
+	assertEquals("Advance to 23", 25, cursor.currentStart());
+	assertTrue("Advance to 26", cursor.advanceTo(26));
+	assertEquals("Advance to 26", 25, cursor.currentStart());
+	assertTrue("Advance to 2 should not move backwards", cursor.advanceTo(2));
+	assertEquals("Advance to 2 should not move backwards", 25, cursor.currentStart());
+	assertTrue("Advance to 41", cursor.advanceTo(41));
+	assertEquals("Advance to 41", 40, cursor.currentStart());
+	assertFalse("Advance to 51", cursor.advanceTo(51));
+	assertTrue("Cursor should be exhausted", cursor.isExhausted());
+	
+	/*
+	 * Leapfrog join of three sequences.
+	 */
+	IntegerSequence[] sequences = new IntegerSequence[]{
+	    s,
+	    _factory.getSequence("2-3,5-6,21-22,24-27,36-41,50-60"),
+	    _factory.getSequence("0-5,21,26-44,50")
+	};
+	IntegerSequenceCursor[] cursors = new IntegerSequenceCursor[sequences.length];
+	for (int iSeq = 0; iSeq < sequences.length; iSeq++) {
+	    cursors[iSeq] = sequences[iSeq].cursor();
+	}
+	int length = 0;
+	int value = Integer.MIN_VALUE;
+	boolean done = false;
+	while (!done) {
+	    int start = value;
+	    int end = Integer.MAX_VALUE;
+	    for (IntegerSequenceCursor c : cursors) {
+		if (!c.advanceTo(value)) {
+		    done = true;
+		    break;
+		}
+		start = Math.max(start, c.currentStart());
+		end = Math.min(end, c.currentEnd());
+	    }
+	    if (!done) {
+		if (start <= end) {
+		    length += (end - start) + 1;
+		    value = end + 1;
+		} else {
+		    value = start;
+		}
+	    }
+	}
+	int expected = s.intersect(sequences[1]).intersect(sequences[2]).length();
+	assertEquals("Leapfrog join length", expected, length);
+    }
+
+    @Test
+    public void deltaTest() {
+	
+	IntegerSequence s = _factory.getSequence("1-10,20-22,25-27");
+	
+	IntegerSequence[] targets = new IntegerSequence[]{
+	    s.append(28),
+	    s.append(30),
+	    s.close(21),
+	    s.close(0),
+	    s,
+	    _factory.getSequence("1-10,20-22,25-27,29-31,40"),
+	    _factory.getSequence("0-4")
+	};
+	for (IntegerSequence target : targets) {
+	    IntegerSequenceDelta delta = s.computeDelta(target);
+	    assertTrue("Applying delta should return " + target, s.applyDelta(delta).equals(target));
+	    IntegerSequenceDelta decoded = IntegerSequenceDelta.fromByteArray(delta.toByteArray());
+	    assertTrue("Applying decoded delta should return " + target, s.applyDelta(decoded).equals(target));
+	}
+	
+	IntegerSequenceDelta delta = s.computeDelta(s.append(28));
+	assertEquals("Delta should share two intervals", 2, delta.prefixLength());
+	assertEquals("Delta should contain one interval", 1, delta.intervals());
+	assertEquals("Delta should be encoded in five bytes", 5, delta.toByteArray().length);
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void deltaWithInvalidSourceTest() {
+	
+	IntegerSequence s = _factory.getSequence("1-10,20-22,25-27");
+	s.append(30).applyDelta(s.computeDelta(s.append(40)));
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void deltaWithInvalidPrefixTest() {
+	
+	/* Prefix of two intervals for a source with one interval */
+	IntegerSequenceDelta.fromByteArray(new byte[]{1, 2, 0});
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void deltaWithNegativeGapTest() {
+	
+	/* Intervals [5-10] and [2-2] encoded with a gap of -10 */
+	byte[] bytes = new byte[]{0, 0, 2, 10, 5, (byte)0xF6, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x01, 0};
+	_factory.getSequence().applyDelta(IntegerSequenceDelta.fromByteArray(bytes));
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void deltaWithOverflowingJunctionTest() {
+	
+	/* Interval [5-5] after a prefix that ends at the maximum value */
+	byte[] bytes = new byte[]{1, 1, 1, 10, 0};
+	_factory.getSequence("0-" + Integer.MAX_VALUE).applyDelta(IntegerSequenceDelta.fromByteArray(bytes));
+    }
+
+    @Test
+    public void differenceTest() {
+	
+	Random random = new Random(11);
+	for (int iRun = 0; iRun < 200; iRun++) {
+	    IntegerSequence s1 = IntegerSequenceGenerator.sequence(_factory, random, (iRun % 2 == 0) ? 10 : 200, 400);
+	    IntegerSequence s2 = IntegerSequenceGenerator.sequence(_factory, random, (iRun % 2 == 0) ? 200 : 10, 400);
+	    IntegerSequence difference = s1.difference(s2);
+	    IntegerSequence symDifference = s1.symmetricDifference(s2);
+	    assertEquals("Difference length", s1.differenceLength(s2), difference.length());
+	    assertEquals("Symmetric difference length", s1.unionLength(s2) - s1.intersectionLength(s2), symDifference.length());
+	    for (int value = 0; value < 400; value++) {
+		boolean inI = s1.contains(value);
+		boolean inJ = s2.contains(value);
+		assertEquals("Difference contains " + value, inI && !inJ, difference.contains(value));
+		assertEquals("Symmetric difference contains " + value, inI != inJ, symDifference.contains(value));
+	    }
+	    assertTrue("Symmetric difference", symDifference.equals(s2.symmetricDifference(s1)));
+	}
+	IntegerSequence s = _factory.getSequence("1-3,10-12");
+	assertTrue("Difference with disjoint sequence", s == s.difference(_factory.getSequence("5-8")));
+	assertTrue("Adjacent symmetric difference", _factory.getSequence("1-12").equals(s.symmetricDifference(_factory.getSequence("4-9"))));
+	
+	/* The result of a symmetric difference uses the factory of this sequence */
+	BoundedIntegerSequenceFactory tiny = new BoundedIntegerSequenceFactory(255);
+	IntegerSequence symDifference = tiny.getSequence().symmetricDifference(s);
+	assertTrue("Symmetric difference with empty sequence", s.equals(symDifference));
+	assertEquals("Symmetric difference uses factory", IntegerSequenceLayout.TINY, symDifference.union(_factory.getSequence("100")).layout());
+    }
+
     @Test
     public void emptySequenceTest() {
 	
 	assertEquals("Length of an epmty sequence should be 0", 0, _factory.getSequence().length());	
     }
-    
+
+    @Test
+    public void estimatedSizeTest() {
+	
+	IntegerSequence small = _factory.getSequence("1-5,100000-100002");
+	IntegerSequence large = _factory.getSequence("1-5,100000-100002,200000-200005,300000-300010");
+	List<IntegerSequence> sequences = Arrays.asList(small, large);
+	long total = IntegerSequenceFactory.getLayoutSizeInBytes(sequences, IntegerSequenceLayout.PACKED);
+	assertEquals(small.estimatedSizeInBytes() + large.estimatedSizeInBytes(), total);
+	assertTrue(small.estimatedSizeInBytes() < large.estimatedSizeInBytes());
+	assertEquals(0, small.estimatedSizeInBytes() % 8);
+	long size = large.estimatedSizeInBytes();
+	large.summary();
+	large.count(0, 250000);
+	assertTrue(large.estimatedSizeInBytes() > size);
+	assertTrue(IntegerSequenceFactory.getLayoutSizeInBytes(sequences, IntegerSequenceLayout.PACKED) > total);
+    }
+
+    @Test
+    public void fromSortedTest() {
+	
+	int[] values = new int[]{-1, 1, 2, 3, 4, 4, 6, 9, 10, 13, 14, 15, 22, 23, 24, 25, 30, -1};
+	NonNegativeIntegerSequence seq = (NonNegativeIntegerSequence)_factory.fromSorted(values, 1, values.length - 2);
+	assertEquals("Expected intervals 1-4,6,9-10,13-15,22-25,30", "1-4,6,9-10,13-15,22-25,30", seq.toIntervalString());
+	assertTrue("Sequence from empty range should be empty", _factory.fromSorted(values, 3, 0).isEmpty());
+	assertEquals("Expected single value", "4", _factory.fromSorted(values, 4, 2).toString());
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void fromSortedWithNegativeValue() {
+	
+	_factory.fromSorted(new int[]{-1, 1, 2}, 0, 3);
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void fromSortedWithUnsortedValues() {
+	
+	_factory.fromSorted(new int[]{1, 2, 5, 4}, 0, 4);
+    }
+
+    @Test
+    public void fromUnsortedTest() {
+	
+	int[] values = new int[]{30, 9, 4, 1, 25, 22, 3, 13, 6, 15, 2, 10, 14, 4, 23, 24, 1};
+	NonNegativeIntegerSequence seq = (NonNegativeIntegerSequence)_factory.fromUnsorted(values);
+	assertEquals("Expected intervals 1-4,6,9-10,13-15,22-25,30", "1-4,6,9-10,13-15,22-25,30", seq.toIntervalString());
+	assertEquals("Input array should not be modified", 30, values[0]);
+	assertTrue("Sequence from empty array should be empty", _factory.fromUnsorted(new int[0]).isEmpty());
+    }
+
     @Test
     public void intersectTest() {
 	
@@ -319,6 +711,278 @@ public class IntegerSequenceTest {
 	assertTrue("Should contain 195", intersect.contains(195));
     }
     
+    @Test
+    public void layoutTest() {
+	
+	NonNegativeIntegerSequenceFactory factory = new NonNegativeIntegerSequenceFactory();
+	IntegerSequence[] sequences = new IntegerSequence[]{
+	    factory.getSequence("5-100"),
+	    factory.getSequence("1,3,5,200000"),
+	    factory.getSequence("1-3,10-20,65530-65536"),
+	    factory.getSequence("1-3,100000-100010")
+	};
+	List<IntegerSequence> retained = new ArrayList<>(Arrays.asList(sequences));
+	IntegerSequenceLayout[] layouts = new IntegerSequenceLayout[]{
+	    IntegerSequenceLayout.RUN,
+	    IntegerSequenceLayout.SINGLETONS,
+	    IntegerSequenceLayout.COMPACT,
+	    IntegerSequenceLayout.PACKED
+	};
+	for (int iSeq = 0; iSeq < sequences.length; iSeq++) {
+	    assertEquals("Layout of " + sequences[iSeq], layouts[iSeq], sequences[iSeq].layout());
+	    assertEquals("Layout count for " + layouts[iSeq], 1, IntegerSequenceFactory.getLayoutCount(retained, layouts[iSeq]));
+	    assertEquals("Layout size for " + layouts[iSeq], sequences[iSeq].estimatedSizeInBytes(), IntegerSequenceFactory.getLayoutSizeInBytes(retained, layouts[iSeq]));
+	}
+	assertTrue("Compact layout", factory.getSequence("1-3,10-20,65530-65536").equals(sequences[2]));
+	assertEquals("Compact layout end", 65536, sequences[2].lastValue());
+	assertEquals("Singleton layout", 4, sequences[1].length());
+	assertTrue("Singleton layout", sequences[1].contains(200000));
+	
+	/* Views are counted separately from the layout of their source */
+	NonNegativeIntegerSequence complement = ((NonNegativeIntegerSequence)sequences[3]).complement(200000);
+	IntegerSequence[] parts = sequences[3].split(2);
+	assertEquals(IntegerSequenceLayout.VIEW, complement.layout());
+	assertEquals(IntegerSequenceLayout.VIEW, parts[0].layout());
+	assertEquals(IntegerSequenceLayout.VIEW, parts[1].layout());
+	retained.add(complement);
+	retained.add(parts[0]);
+	retained.add(parts[1]);
+	assertEquals(3, IntegerSequenceFactory.getLayoutCount(retained, IntegerSequenceLayout.VIEW));
+	assertEquals(1, IntegerSequenceFactory.getLayoutCount(retained, IntegerSequenceLayout.PACKED));
+	assertEquals(1, IntegerSequenceFactory.getLayoutCount(retained, IntegerSequenceLayout.COMPACT));
+	
+	/* Temporary results are not counted */
+	for (int iRun = 0; iRun < 100; iRun++) {
+	    sequences[0].union(sequences[2]);
+	}
+	assertEquals(1, IntegerSequenceFactory.getLayoutCount(retained, IntegerSequenceLayout.COMPACT));
+    }
+
+    @Test
+    public void lengthOperationsTest() {
+	
+	IntegerSequence[] sequences = new IntegerSequence[]{
+	    _factory.getSequence(),
+	    _factory.getSequence("1-10,20-22,25-27"),
+	    _factory.getSequence("2-3,5-6,21-22,24-27"),
+	    _factory.getSequence("11-19,23,35-40"),
+	    _factory.getSequence("1-40")
+	};
+	for (IntegerSequence s1 : sequences) {
+	    for (IntegerSequence s2 : sequences) {
+		int intersection = s1.intersect(s2).length();
+		int union = s1.union(s2).length();
+		assertEquals("Intersection length of " + s1 + " and " + s2, intersection, s1.intersectionLength(s2));
+		assertEquals("Union length of " + s1 + " and " + s2, union, s1.unionLength(s2));
+		assertEquals("Difference length of " + s1 + " and " + s2, s1.length() - intersection, s1.differenceLength(s2));
+		if (union == 0) {
+		    assertEquals("Jaccard of empty sequences", 1.0, s1.jaccard(s2), 0.0);
+		} else {
+		    assertEquals("Jaccard of " + s1 + " and " + s2, (double)intersection / (double)union, s1.jaccard(s2), 1e-9);
+		}
+	    }
+	}
+    }
+
+    @Test
+    public void probeTest() {
+	
+	IntegerSequence s = _factory.getSequence("1-10,20-22,25-27,30,35-40,50-60");
+	IntegerSequenceProbe probe = s.probe();
+	for (int value = -2; value < 65; value++) {
+	    assertEquals("Monotone probe for " + value, s.contains(value), probe.contains(value));
+	}
+	int[] values = new int[]{55, 3, 21, 60, 0, 30, 30, 29, 38, 11, 1, 61, 26};
+	for (int value : values) {
+	    assertEquals("Random probe for " + value, s.contains(value), probe.contains(value));
+	}
+	assertFalse("Empty sequence", _factory.getSequence().probe().contains(1));
+    }
+
+    @Test
+    public void relateTest() {
+	
+	IntegerSequence seq = _factory.getSequence("1-10,20-30");
+	assertEquals(IntegerSequenceRelation.EQUAL, seq.relate(_factory.getSequence("1-10,20-30")));
+	assertEquals(IntegerSequenceRelation.SUBSET, seq.relate(_factory.getSequence("0-30")));
+	assertEquals(IntegerSequenceRelation.SUPERSET, seq.relate(_factory.getSequence("2-5,20-30")));
+	assertEquals(IntegerSequenceRelation.OVERLAP, seq.relate(_factory.getSequence("5-15")));
+	assertEquals(IntegerSequenceRelation.DISJOINT, seq.relate(_factory.getSequence("11-19,31")));
+	assertEquals(IntegerSequenceRelation.SUPERSET, seq.relate(_factory.getSequence()));
+	assertEquals(IntegerSequenceRelation.SUBSET, _factory.getSequence().relate(seq));
+	assertEquals(IntegerSequenceRelation.EQUAL, _factory.getSequence().relate(_factory.getSequence()));
+	
+	Random random = new Random(13);
+	for (int iRun = 0; iRun < 1000; iRun++) {
+	    IntegerSequence seqA = _factory.fromUnsorted(IntegerSequenceGenerator.values(random, random.nextInt(20) + 1, 0, 40));
+	    IntegerSequence seqB = _factory.fromUnsorted(IntegerSequenceGenerator.values(random, random.nextInt(20) + 1, 0, 40));
+	    IntegerSequenceRelation expected;
+	    if (seqA.equals(seqB)) {
+		expected = IntegerSequenceRelation.EQUAL;
+	    } else if (seqB.contains(seqA)) {
+		expected = IntegerSequenceRelation.SUBSET;
+	    } else if (seqA.contains(seqB)) {
+		expected = IntegerSequenceRelation.SUPERSET;
+	    } else if (seqA.overlap(seqB)) {
+		expected = IntegerSequenceRelation.OVERLAP;
+	    } else {
+		expected = IntegerSequenceRelation.DISJOINT;
+	    }
+	    assertEquals(seqA + " and " + seqB, expected, seqA.relate(seqB));
+	}
+    }
+
+    @Test
+    public void remapTest() {
+	
+	IntegerSequence s = _factory.getSequence("1-3,5-6,10,20-22");
+	/*
+	 * Remove versions 4 and 7-9.
+	 */
+	IntegerSequence r = s.remap(new IntegerSequenceMapping() {
+	    @Override
+	    public int apply(int value) {
+		if (value < 4) {
+		    return value;
+		} else if (value < 7) {
+		    return value - 1;
+		} else {
+		    return value - 4;
+		}
+	    }
+	});
+	assertTrue("Remapped sequence", _factory.getSequence("1-6,16-18").equals(r));
+	assertEquals("Remapped length", s.length(), r.length());
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void remapWithDecreasingMapping() {
+	
+	_factory.getSequence("1-3,5-6").remap(new IntegerSequenceMapping() {
+	    @Override
+	    public int apply(int value) {
+		return 10 - value;
+	    }
+	});
+    }
+
+    @Test
+    public void shiftTest() {
+	
+	IntegerSequence s = _factory.getSequence("1-3,5-6,10");
+	assertTrue("Shift right", _factory.getSequence("11-13,15-16,20").equals(s.shift(10)));
+	assertTrue("Shift left", _factory.getSequence("0-2,4-5,9").equals(s.shift(-1)));
+	assertTrue("Shift empty", _factory.getSequence().shift(5).isEmpty());
+    }
+
+    @Test(expected=java.lang.IllegalArgumentException.class)
+    public void shiftToNegativeValue() {
+	
+	_factory.getSequence("1-3,5-6,10").shift(-2);
+    }
+
+    @Test
+    public void sketchTest() {
+	
+	Random random = new Random(42);
+	IntegerSequence s = _factory.getSequence();
+	IntegerSequenceSketch sketch = new IntegerSequenceSketch(_factory, 8);
+	int value = 0;
+	for (int iValue = 0; iValue < 500; iValue++) {
+	    value += 1 + random.nextInt(random.nextBoolean() ? 2 : 50);
+	    s = s.append(value);
+	    sketch.append(value);
+	    assertTrue("Sketch size", sketch.intervals() <= 8);
+	    IntegerSequence c = s.coarsen(8);
+	    IntegerSequence approx = sketch.toSequence();
+	    assertTrue("Sketch should contain sequence", approx.contains(s));
+	    assertEquals("Sketch error", s.coarsenError(8), sketch.error());
+	    assertEquals("Sketch length", c.length(), approx.length());
+	}
+	assertEquals("Sketch from sequence", sketch.error(), new IntegerSequenceSketch(s, 8).error());
+    }
+
+    @Test
+    public void splitTest() {
+	
+	Random random = new Random(5);
+	for (int iRun = 0; iRun < 50; iRun++) {
+	    IntegerSequence s = IntegerSequenceGenerator.sequence(_factory, random, 100, 300);
+	    for (int parts = 1; parts <= 12; parts++) {
+		IntegerSequence[] split = s.split(parts);
+		assertEquals("Number of parts", parts, split.length);
+		IntegerSequence union = _factory.getSequence();
+		int lastValue = -1;
+		for (IntegerSequence part : split) {
+		    assertTrue("Part length", Math.abs(part.length() - (s.length() / parts)) <= 1);
+		    if (!part.isEmpty()) {
+			assertTrue("Parts should be ordered", part.firstValue() > lastValue);
+			lastValue = part.lastValue();
+			assertTrue("Part should be contained", s.contains(part));
+		    }
+		    union = union.union(part);
+		}
+		assertTrue("Union of parts", s.equals(union));
+	    }
+	}
+	IntegerSequence[] split = _factory.getSequence("1-10").split(3);
+	assertTrue("First part", _factory.getSequence("1-3").equals(split[0]));
+	assertTrue("Second part", _factory.getSequence("4-6").equals(split[1]));
+	assertTrue("Third part", _factory.getSequence("7-10").equals(split[2]));
+	split = split[2].split(2);
+	assertTrue("Split of part", _factory.getSequence("9-10").equals(split[1]));
+    }
+
+    @Test
+    public void summaryTest() {
+	
+	Random random = new Random(7);
+	IntegerSequence[] sequences = new IntegerSequence[60];
+	for (int iSeq = 0; iSeq < sequences.length; iSeq++) {
+	    int span = 1 + random.nextInt((iSeq % 3 == 0) ? 50 : 5000);
+	    sequences[iSeq] = IntegerSequenceGenerator.sequence(_factory, random, 30, random.nextInt(5000), span);
+	}
+	for (IntegerSequence s1 : sequences) {
+	    IntegerSequenceSummary summary = s1.summary();
+	    for (int value = 0; value < 10000; value += 7) {
+		if (s1.contains(value)) {
+		    assertTrue("Summary should contain " + value, summary.mayContain(value));
+		}
+	    }
+	    for (IntegerSequence s2 : sequences) {
+		boolean overlap = (s1.intersectionLength(s2) > 0);
+		boolean contains = (s1.intersectionLength(s2) == s2.length());
+		assertEquals("Overlap of " + s1 + " and " + s2, overlap, s1.overlap(s2));
+		assertEquals("Intersection of " + s1 + " and " + s2, s1.intersectionLength(s2), s1.intersect(s2).length());
+		assertEquals("Containment of " + s2 + " in " + s1, contains, s1.contains(s2));
+		if (overlap) {
+		    assertTrue("Summary overlap", summary.mayOverlap(s2.summary()));
+		}
+		if (contains) {
+		    assertTrue("Summary containment", summary.mayContain(s2.summary()));
+		}
+	    }
+	}
+	IntegerSequenceSummary summary = _factory.getSequence("1-3,100").summary();
+	assertFalse("Summary should reject gap", summary.mayOverlap(_factory.getSequence("50-60").summary()));
+	assertFalse("Summary should reject gap", summary.mayContain(50));
+	
+	/* Operations do not compute summaries on their own */
+	IntegerSequence seqA = _factory.getSequence("1-3,100");
+	IntegerSequence seqB = _factory.getSequence("50-60");
+	long sizeA = seqA.estimatedSizeInBytes();
+	long sizeB = seqB.estimatedSizeInBytes();
+	assertFalse(seqA.overlap(seqB));
+	assertTrue(seqA.intersect(seqB).isEmpty());
+	assertFalse(seqA.contains(seqB));
+	assertEquals(sizeA, seqA.estimatedSizeInBytes());
+	assertEquals(sizeB, seqB.estimatedSizeInBytes());
+	seqA.summary();
+	seqB.summary();
+	assertFalse(seqA.overlap(seqB));
+	assertFalse(seqA.contains(seqB));
+    }
+
     @Test
     public void toSequenceTest() {
 	